@@ -1,9 +1,13 @@
 // src/main/java/distributedSystem/Monitoring/config/KafkaListenerConfig.java
 package distributedSystem.Monitoring.config;
 
+import distributedSystem.Monitoring.kafka.DeviceReadingParser;
+import distributedSystem.Monitoring.kafka.ShardOwnershipListener;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
@@ -17,19 +21,37 @@ public class KafkaConsumerSimulationConfig {
     private static final Logger log = LoggerFactory.getLogger(KafkaConsumerSimulationConfig.class);
 
     @Bean(name = "filteredKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, String> filteredKafkaListenerContainerFactory(
-            ConsumerFactory<String, String> consumerFactory) {
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> filteredKafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> consumerFactory,
+            ShardOwnershipListener shardOwnershipListener,
+            @Value("${app.ingest.concurrency:1}") int concurrency,
+            @Value("${app.flush-seconds:5}") long flushSeconds,
+            @Value("${app.ingest.batch.enabled:false}") boolean batchEnabled,
+            @Value("${app.ingest.batch.max-records:500}") int maxRecords,
+            @Value("${app.ingest.batch.poll-interval-ms:0}") long pollIntervalMs) {
 
-        var f = new ConcurrentKafkaListenerContainerFactory<String, String>();
+        var f = new ConcurrentKafkaListenerContainerFactory<String, byte[]>();
         f.setConsumerFactory(consumerFactory);
 
+        // One consumer thread per partition at most; each thread owns its partitions' aggregator shards
+        f.setConcurrency(Math.max(1, concurrency));
+        f.getContainerProperties().setConsumerRebalanceListener(shardOwnershipListener);
+        // Idle events let an owner seal its shards when no readings arrive (see ShardOwnershipListener)
+        f.getContainerProperties().setIdleEventInterval(Math.max(1, flushSeconds) * 1000L);
+
+        // Batch mode: the listener receives a whole poll (see DeviceReadingBatchListener)
+        if (batchEnabled) {
+            f.setBatchListener(true);
+            f.getContainerProperties().getKafkaConsumerProperties()
+                    .setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.max(1, maxRecords)));
+            // Waiting between polls lets more records pile up per batch (trades latency for throughput)
+            if (pollIntervalMs > 0) {
+                f.getContainerProperties().setIdleBetweenPolls(pollIntervalMs);
+            }
+        }
+
         // Filter: drop non-JSON values early (true = filtered out)
-        f.setRecordFilterStrategy(rec -> {
-            String v = rec.value();
-            if (v == null) return true;
-            String p = v.trim();
-            return p.isEmpty() || p.charAt(0) != '{';
-        });
+        f.setRecordFilterStrategy(rec -> !DeviceReadingParser.looksLikeJsonObject(rec.value()));
 
         // Commit offsets for filtered records so we don't see them again
         f.setAckDiscarded(true);
@@ -2,8 +2,24 @@
 package distributedSystem.Monitoring.controller;
 
 import distributedSystem.Monitoring.dto.DeviceSummaryDto;
-import distributedSystem.Monitoring.service.WindowAggregator;
+import distributedSystem.Monitoring.service.BatchSeriesService;
+import distributedSystem.Monitoring.service.ConsumptionHistoryService;
+import distributedSystem.Monitoring.service.ConsumptionRangeService;
+import distributedSystem.Monitoring.service.DeviceLatestWindows;
+import distributedSystem.Monitoring.service.HistoryStep;
+import distributedSystem.Monitoring.service.LiveConsumptionHub;
+import distributedSystem.Monitoring.service.SeriesCache;
+import distributedSystem.Monitoring.service.SeriesFormat;
+import distributedSystem.Monitoring.service.ThresholdTable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -11,33 +27,153 @@ import java.util.Map;
 @RequestMapping("/monitoring")
 public class MessageController {
 
-    private final WindowAggregator windowAggregator;
+    private final ThresholdTable thresholds;
+    private final ConsumptionHistoryService history;
+    private final ConsumptionRangeService range;
+    private final BatchSeriesService batchSeries;
+    private final SeriesCache seriesCache;
+    private final DeviceLatestWindows latestWindows;
+    private final LiveConsumptionHub live;
 
 
 
     public MessageController(
-            WindowAggregator windowAggregator) {
-        this.windowAggregator = windowAggregator;
+            ThresholdTable thresholds,
+            ConsumptionHistoryService history,
+            ConsumptionRangeService range,
+            BatchSeriesService batchSeries,
+            SeriesCache seriesCache,
+            DeviceLatestWindows latestWindows,
+            LiveConsumptionHub live) {
+        this.thresholds = thresholds;
+        this.history = history;
+        this.range = range;
+        this.batchSeries = batchSeries;
+        this.seriesCache = seriesCache;
+        this.latestWindows = latestWindows;
+        this.live = live;
     }
 
 
 
 
+    /**
+     * Latest window per device, sorted by device id, from memory. Optional filters: userId (owner per
+     * device_monitoring_ref) and deviceId; page/size page through the matches (size 0 = all).
+     * X-Total-Count carries the number of matches.
+     */
     @GetMapping
-    public List<DeviceSummaryDto> list() {
-        return windowAggregator.listDeviceSummaries();
-
+    public ResponseEntity<List<DeviceSummaryDto>> list(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String deviceId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size
+    ) {
+        DeviceLatestWindows.Page result = latestWindows.page(userId, deviceId, page, size);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", Integer.toString(result.total()))
+                .body(result.items());
     }
 
+    /**
+     * Day series with a strong ETag; If-None-Match with the current tag gets 304 and no body.
+     * The Accept header selects the representation (see {@link SeriesFormat}); plain JSON rows by default.
+     */
     @GetMapping("/devices/{deviceId}/series")
-    public List<Map<String, Object>> rawSeriesForDay(
+    public ResponseEntity<byte[]> rawSeriesForDay(
             @PathVariable String deviceId,
             @RequestParam(required = false) String date,
             @RequestParam(defaultValue = "UTC") String tz,
             @RequestParam(name = "virtualHourMinutes", defaultValue = "#{${app.aggregate-minutes:60}}")
-            int virtualHourMinutes
+            int virtualHourMinutes,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request
+    ) {
+        SeriesFormat format = SeriesFormat.negotiate(accept);
+        SeriesCache.Cached series = seriesCache.series(deviceId, date, tz, virtualHourMinutes, format);
+        if (request.checkNotModified(series.etag())) return null;
+        return ResponseEntity.ok()
+                .eTag(series.etag())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.mediaType())
+                .body(series.body());
+    }
+
+    /**
+     * Consumption over [from, to) in steps like 15m, 1h, 1d or 1mo (UTC). Served from the coarsest
+     * rollup (monthly/daily/hourly) that lines up with the range and step, raw windows otherwise.
+     */
+    @GetMapping("/devices/{deviceId}/history")
+    public Map<String, Object> history(
+            @PathVariable String deviceId,
+            @RequestParam Instant from,
+            @RequestParam Instant to,
+            @RequestParam(defaultValue = "1h") String step
+    ) {
+        return history.history(deviceId, from, to, HistoryStep.parse(step));
+    }
+
+    /**
+     * Raw windows over [from, to) for several devices at once (deviceIds=a,b,... or every device of
+     * userId), read in one query and streamed grouped by device.
+     */
+    @GetMapping("/series")
+    public ResponseEntity<StreamingResponseBody> batchSeries(
+            @RequestParam(required = false) List<String> deviceIds,
+            @RequestParam(required = false) Long userId,
+            @RequestParam Instant from,
+            @RequestParam Instant to
     ) {
-        return windowAggregator.buildRawSeriesForDay(deviceId, date, tz, virtualHourMinutes);
+        BatchSeriesService.Query query = batchSeries.query(deviceIds, userId, from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> batchSeries.write(query, out));
+    }
+
+    /**
+     * Consumption over any [from, to) bucketed in SQL by step (15m, 1h, 1d, 1mo, ...) with fn
+     * sum|avg|min|max, streamed while it is read. Only buckets that contain windows are returned.
+     * maxPoints (0 = all) downsamples for charts with downsample=lttb (default) or minmax.
+     */
+    @GetMapping("/devices/{deviceId}/range")
+    public ResponseEntity<StreamingResponseBody> range(
+            @PathVariable String deviceId,
+            @RequestParam Instant from,
+            @RequestParam Instant to,
+            @RequestParam(defaultValue = "1h") String step,
+            @RequestParam(defaultValue = "sum") String fn,
+            @RequestParam(defaultValue = "0") int maxPoints,
+            @RequestParam(defaultValue = "lttb") String downsample
+    ) {
+        ConsumptionRangeService.Query query = range.query(deviceId, from, to, step, fn, maxPoints, downsample);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> range.write(query, out));
+    }
+
+    /**
+     * Live window updates as Server-Sent Events ("windows" events, a JSON array of the windows that
+     * changed since the previous event), for one device or for every device of a user.
+     */
+    @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter live(
+            @RequestParam(required = false) String deviceId,
+            @RequestParam(required = false) Long userId
+    ) {
+        if ((deviceId == null || deviceId.isBlank()) == (userId == null)) {
+            throw new IllegalArgumentException("Exactly one of deviceId or userId is required");
+        }
+        return userId != null ? live.subscribeUser(userId) : live.subscribeDevice(deviceId);
+    }
 
+    /** Re-reads device_monitoring_ref into the in-memory alert threshold table. */
+    @PostMapping("/thresholds/reload")
+    public Map<String, Object> reloadThresholds() {
+        int devices = thresholds.reload();
+        return Map.of(
+                "devices", devices,
+                "loaded_at_utc", Instant.ofEpochMilli(thresholds.loadedAtMillis()).toString()
+        );
     }
 }
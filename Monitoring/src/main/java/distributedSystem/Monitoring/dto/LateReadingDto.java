@@ -0,0 +1,19 @@
+package distributedSystem.Monitoring.dto;
+
+
+import java.time.Instant;
+
+/**
+ * Reading that was not aggregated: its window had already closed ("late") or its event time was too far
+ * ahead of the wall clock ("future"). kwh and samples may cover several readings of the same window.
+ */
+public record LateReadingDto(
+        Long deviceId,
+        Instant eventTimeUtc,
+        Instant windowStartUtc,
+        double kwh,
+        int samples,
+        String reason,
+        Instant watermarkUtc,
+        int partition
+) {}
@@ -0,0 +1,128 @@
+// src/main/java/distributedSystem/Monitoring/kafka/DeviceReadingBatchListener.java
+package distributedSystem.Monitoring.kafka;
+
+import distributedSystem.Monitoring.model.ParsedReading;
+import distributedSystem.Monitoring.service.DeviceIdCodec;
+import distributedSystem.Monitoring.service.LastSeenService;
+import distributedSystem.Monitoring.service.WindowAggregator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch variant of {@link DeviceReadingListener} (enabled with app.ingest.batch.enabled=true).
+ * Parses a whole poll, sums readings per (device, window) locally and applies one aggregator
+ * update per bucket instead of one per record.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ingest.batch.enabled", havingValue = "true")
+public class DeviceReadingBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceReadingBatchListener.class);
+
+    private record BatchKey(int partition, long deviceId, long windowStartMillis) {}
+
+    private static final Comparator<BatchKey> APPLY_ORDER = Comparator.comparingInt(BatchKey::partition)
+            .thenComparingLong(BatchKey::windowStartMillis)
+            .thenComparingLong(BatchKey::deviceId);
+
+    private static final class Partial {
+        double kwh;
+        int samples;
+        long lastTsMs = Long.MIN_VALUE;
+    }
+
+    private final DeviceReadingParser parser;
+    private final DeviceIdCodec deviceIds;
+    private final WindowAggregator aggregator;
+    private final LastSeenService lastSeen;
+    private final IngestMetrics metrics;
+
+    private final ThreadLocal<ParsedReading> reading = ThreadLocal.withInitial(ParsedReading::new);
+
+    public DeviceReadingBatchListener(DeviceReadingParser parser, DeviceIdCodec deviceIds,
+                                      WindowAggregator aggregator, LastSeenService lastSeen,
+                                      IngestMetrics metrics) {
+        this.parser = parser;
+        this.deviceIds = deviceIds;
+        this.aggregator = aggregator;
+        this.lastSeen = lastSeen;
+        this.metrics = metrics;
+    }
+
+    @KafkaListener(
+            id = ShardOwnershipListener.LISTENER_ID,
+            topics = "${app.device-topic}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "filteredKafkaListenerContainerFactory"
+    )
+    public void onBatch(List<ConsumerRecord<String, byte[]>> records) {
+        if (records.isEmpty()) return;
+
+        Map<BatchKey, Partial> buckets = new HashMap<>();
+        Map<Long, long[]> latestPerDevice = new HashMap<>();
+        Map<Integer, Long> nextOffsets = new HashMap<>();
+        Map<Integer, int[]> consumed = new HashMap<>();
+
+        ParsedReading dr = reading.get();
+        for (ConsumerRecord<String, byte[]> rec : records) {
+            byte[] payload = rec.value();
+            nextOffsets.merge(rec.partition(), rec.offset() + 1, Math::max);
+            consumed.computeIfAbsent(rec.partition(), k -> new int[1])[0]++;
+            try {
+                long t0 = System.nanoTime();
+                if (!parser.parse(payload, dr)) continue;
+
+                long deviceId = deviceIds.parse(dr.source(), dr.deviceIdStart(), dr.deviceIdEnd());
+                metrics.recordParse(System.nanoTime() - t0);
+                if (deviceId == DeviceIdCodec.NO_ID) continue;
+                if (!aggregator.accepts(deviceId)) {
+                    log.warn("Skipping reading of device id {} beyond the bucket store's range @{} p{} off {}",
+                            deviceId, rec.topic(), rec.partition(), rec.offset());
+                    continue;
+                }
+                long tsMs = dr.timestampMillis();
+
+                Partial part = buckets.computeIfAbsent(
+                        new BatchKey(rec.partition(), deviceId, aggregator.windowStartMillis(tsMs)), k -> new Partial());
+                part.kwh += dr.valueKwh();
+                part.samples++;
+                part.lastTsMs = Math.max(part.lastTsMs, tsMs);
+
+                long[] latest = latestPerDevice.computeIfAbsent(deviceId, k -> new long[]{Long.MIN_VALUE});
+                latest[0] = Math.max(latest[0], tsMs);
+            } catch (Exception e) {
+                log.warn("Failed to parse @{} p{} off {}: {} | payload={}",
+                        rec.topic(), rec.partition(), rec.offset(), e.toString(),
+                        payload == null ? null : new String(payload, StandardCharsets.UTF_8));
+            }
+        }
+
+        latestPerDevice.forEach((deviceId, latest) -> lastSeen.mark(deviceId, latest[0]));
+        // in window order per partition: each update may move the watermark, and a poll can span more
+        // event time than the allowed lateness, so hash order would reject in-order windows as late
+        List<Map.Entry<BatchKey, Partial>> ordered = new ArrayList<>(buckets.entrySet());
+        ordered.sort(Map.Entry.comparingByKey(APPLY_ORDER));
+        for (Map.Entry<BatchKey, Partial> e : ordered) {
+            BatchKey k = e.getKey();
+            Partial part = e.getValue();
+            aggregator.addSamples(k.partition(), k.deviceId(), part.lastTsMs, part.kwh, part.samples);
+        }
+        aggregator.advance(nextOffsets);
+        consumed.forEach((partition, count) -> metrics.recordConsumed(partition, count[0]));
+
+        ConsumerRecord<String, byte[]> last = records.get(records.size() - 1);
+        log.debug("Consumed batch of {} records ({} buckets) up to {} p{}@{}",
+                records.size(), buckets.size(), last.topic(), last.partition(), last.offset());
+    }
+}
@@ -1,69 +1,93 @@
 // src/main/java/distributedSystem/Monitoring/kafka/DeviceReadingListener.java
 package distributedSystem.Monitoring.kafka;
 
-import distributedSystem.Monitoring.model.DeviceReading;
+import distributedSystem.Monitoring.model.ParsedReading;
+import distributedSystem.Monitoring.service.DeviceIdCodec;
 import distributedSystem.Monitoring.service.LastSeenService;
 import distributedSystem.Monitoring.service.WindowAggregator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 @Component
+@ConditionalOnProperty(name = "app.ingest.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class DeviceReadingListener {
 
     private static final Logger log = LoggerFactory.getLogger(DeviceReadingListener.class);
-    private final ObjectMapper mapper;
+    private final DeviceReadingParser parser;
+    private final DeviceIdCodec deviceIds;
     private final WindowAggregator aggregator;
     private final LastSeenService lastSeen;
+    private final IngestMetrics metrics;
 
+    // one reusable decode target per consumer thread
+    private final ThreadLocal<ParsedReading> reading = ThreadLocal.withInitial(ParsedReading::new);
 
-    public DeviceReadingListener(ObjectMapper mapper, WindowAggregator aggregator, LastSeenService lastSeen) {
-        this.mapper = mapper;
+
+    public DeviceReadingListener(DeviceReadingParser parser, DeviceIdCodec deviceIds,
+                                 WindowAggregator aggregator, LastSeenService lastSeen, IngestMetrics metrics) {
+        this.parser = parser;
+        this.deviceIds = deviceIds;
         this.aggregator = aggregator;
         this.lastSeen = lastSeen;
+        this.metrics = metrics;
     }
 
     @KafkaListener(
+            id = ShardOwnershipListener.LISTENER_ID,
             topics = "${app.device-topic}",
             groupId = "${spring.kafka.consumer.group-id}",
             containerFactory = "filteredKafkaListenerContainerFactory"
     )
     public void onMessage(
-            String payload,
+            byte[] payload,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
-            ConsumerRecord<String, String> record
+            ConsumerRecord<String, byte[]> record
     ) {
         try {
-            if (payload == null) return;
-            String p = payload.trim();
-            if (p.isEmpty() || p.charAt(0) != '{') {     // should be filtered already, but belt & suspenders
-                log.warn("Skipping non-JSON payload @{} p{} off {}", topic, partition, offset);
+            ParsedReading dr = reading.get();
+            long t0 = System.nanoTime();
+            if (!parser.parse(payload, dr)) {     // should be filtered already, but belt & suspenders
+                log.warn("Skipping unusable payload @{} p{} off {}", topic, partition, offset);
                 return;
             }
 
-            DeviceReading dr = mapper.readValue(p, DeviceReading.class);
-
-
-            Instant ts = Instant.parse(dr.timestamp());
-            lastSeen.mark(dr.device_id(), ts);
-            aggregator.add(dr.device_id(), ts, dr.value_kwh());
+            long deviceId = deviceIds.parse(dr.source(), dr.deviceIdStart(), dr.deviceIdEnd());
+            metrics.recordParse(System.nanoTime() - t0);
+            if (deviceId == DeviceIdCodec.NO_ID) {
+                log.warn("Skipping reading without numeric device id @{} p{} off {}", topic, partition, offset);
+                return;
+            }
+            if (!aggregator.accepts(deviceId)) {
+                log.warn("Skipping reading of device id {} beyond the bucket store's range @{} p{} off {}",
+                        deviceId, topic, partition, offset);
+                return;
+            }
+            long tsMs = dr.timestampMillis();
+            lastSeen.mark(deviceId, tsMs);
+            aggregator.add(partition, deviceId, tsMs, dr.valueKwh());
 
-            if ((offset % 10) == 0) {
-                log.info("Consumed {} p{}@{} key={} device={} ts={} v={}",
-                        topic, partition, offset, record.key(), dr.device_id(), dr.timestamp(), dr.value_kwh());
+            if ((offset % 10) == 0 && log.isDebugEnabled()) {
+                log.debug("Consumed {} p{}@{} key={} device={} ts={} v={}",
+                        topic, partition, offset, record.key(), deviceIds.format(deviceId), Instant.ofEpochMilli(tsMs), dr.valueKwh());
             }
         } catch (Exception e) {
             log.warn("Failed to parse @{} p{} off {}: {} | payload={}",
-                    topic, partition, offset, e.toString(), payload);
+                    topic, partition, offset, e.toString(),
+                    payload == null ? null : new String(payload, StandardCharsets.UTF_8));
+        } finally {
+            metrics.recordConsumed(partition, 1);
+            aggregator.advance(partition, offset + 1);
         }
     }
 }
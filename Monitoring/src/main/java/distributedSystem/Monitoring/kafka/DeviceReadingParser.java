@@ -0,0 +1,219 @@
+// src/main/java/distributedSystem/Monitoring/kafka/DeviceReadingParser.java
+package distributedSystem.Monitoring.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import distributedSystem.Monitoring.model.DeviceReading;
+import distributedSystem.Monitoring.model.ParsedReading;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Decodes {"device_id":"...","timestamp":"...","value_kwh":...} payloads directly from bytes.
+ * The fast path only handles flat objects with unescaped strings (what the simulator sends);
+ * anything else falls back to Jackson.
+ */
+@Component
+public class DeviceReadingParser {
+
+    private static final byte[] DEVICE_ID = "device_id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_KWH = "value_kwh".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ObjectMapper mapper;
+
+    public DeviceReadingParser(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /** True if the first non-whitespace byte opens a JSON object. */
+    public static boolean looksLikeJsonObject(byte[] payload) {
+        if (payload == null) return false;
+        int i = skipWs(payload, 0);
+        return i < payload.length && payload[i] == '{';
+    }
+
+    /**
+     * Fills {@code out} from {@code payload}, including the timestamp as epoch millis.
+     * Returns false if the payload is not a usable reading.
+     */
+    public boolean parse(byte[] payload, ParsedReading out) throws IOException {
+        if (!looksLikeJsonObject(payload)) return false;
+        if (!parseFast(payload, out)) {
+            DeviceReading dr = mapper.readValue(payload, DeviceReading.class);
+            if (dr.device_id() == null || dr.timestamp() == null) return false;
+            out.set(dr);
+        }
+
+        long ms = IsoInstantDecoder.decodeEpochMillis(out.source(), out.timestampStart(), out.timestampEnd());
+        if (ms == IsoInstantDecoder.INVALID) {
+            ms = Instant.parse(out.timestamp()).toEpochMilli(); // offsets or other ISO variants
+        }
+        out.setTimestampMillis(ms);
+        return true;
+    }
+
+    /** Allocation-free fast path; false means "shape not recognised, use the fallback". */
+    static boolean parseFast(byte[] b, ParsedReading out) {
+        int n = b.length;
+        int i = skipWs(b, 0);
+        if (i >= n || b[i] != '{') return false;
+        i++;
+
+        int idStart = -1, idEnd = -1, tsStart = -1, tsEnd = -1;
+        double value = 0.0;
+        boolean haveValue = false;
+
+        while (true) {
+            i = skipWs(b, i);
+            if (i >= n) return false;
+            if (b[i] == '}') break;
+            if (b[i] != '"') return false;
+
+            // key
+            int keyStart = ++i;
+            while (i < n && b[i] != '"') {
+                if (b[i] == '\\') return false;
+                i++;
+            }
+            if (i >= n) return false;
+            int keyEnd = i++;
+
+            i = skipWs(b, i);
+            if (i >= n || b[i] != ':') return false;
+            i = skipWs(b, i + 1);
+            if (i >= n) return false;
+
+            if (keyEquals(b, keyStart, keyEnd, DEVICE_ID) || keyEquals(b, keyStart, keyEnd, TIMESTAMP)) {
+                if (b[i] != '"') return false;
+                int vStart = ++i;
+                while (i < n && b[i] != '"') {
+                    if (b[i] == '\\') return false;
+                    i++;
+                }
+                if (i >= n) return false;
+                if (b[keyStart] == 'd') { idStart = vStart; idEnd = i; }
+                else { tsStart = vStart; tsEnd = i; }
+                i++;
+            } else if (keyEquals(b, keyStart, keyEnd, VALUE_KWH)) {
+                int vStart = i;
+                while (i < n && isNumberChar(b[i])) i++;
+                if (i == vStart) return false;
+                value = parseDouble(b, vStart, i);
+                if (Double.isNaN(value)) return false;
+                haveValue = true;
+            } else {
+                i = skipScalar(b, i);
+                if (i < 0) return false;
+            }
+
+            i = skipWs(b, i);
+            if (i >= n) return false;
+            if (b[i] == ',') { i++; continue; }
+            if (b[i] == '}') break;
+            return false;
+        }
+
+        if (idStart < 0 || tsStart < 0 || !haveValue) return false;
+        out.set(b, idStart, idEnd, tsStart, tsEnd, value);
+        return true;
+    }
+
+    /**
+     * Exact when the decimal mantissa fits in 2^53 and |exponent| <= 22 (one correctly rounded
+     * multiply/divide); otherwise defers to Double.parseDouble. Returns NaN on malformed input.
+     */
+    static double parseDouble(byte[] b, int from, int to) {
+        int i = from;
+        boolean neg = false;
+        if (b[i] == '-') { neg = true; i++; }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean exact = true;
+
+        for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, digits++) {
+            mantissa = mantissa * 10 + (b[i] - '0');
+            if (mantissa > MAX_EXACT_MANTISSA) exact = false;
+        }
+        if (i < to && b[i] == '.') {
+            i++;
+            for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, digits++) {
+                mantissa = mantissa * 10 + (b[i] - '0');
+                scale--;
+                if (mantissa > MAX_EXACT_MANTISSA) exact = false;
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean expNeg = false;
+            if (i < to && (b[i] == '+' || b[i] == '-')) expNeg = b[i++] == '-';
+            int exp = 0;
+            int expDigits = 0;
+            for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, expDigits++) {
+                exp = Math.min(exp * 10 + (b[i] - '0'), 10_000);
+            }
+            if (expDigits == 0) return Double.NaN;
+            scale += expNeg ? -exp : exp;
+        }
+        if (i != to) return Double.NaN;
+
+        if (!exact || scale < -22 || scale > 22) {
+            try {
+                return Double.parseDouble(new String(b, from, to - from, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        double v = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+        return neg ? -v : v;
+    }
+
+    // ====== helpers ======
+
+    private static int skipWs(byte[] b, int i) {
+        while (i < b.length && (b[i] == ' ' || b[i] == '\t' || b[i] == '\n' || b[i] == '\r')) i++;
+        return i;
+    }
+
+    private static boolean isNumberChar(byte c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private static boolean keyEquals(byte[] b, int start, int end, byte[] key) {
+        if (end - start != key.length) return false;
+        for (int k = 0; k < key.length; k++) {
+            if (b[start + k] != key[k]) return false;
+        }
+        return true;
+    }
+
+    /** Skips a string, number or literal value; returns -1 for nested objects/arrays. */
+    private static int skipScalar(byte[] b, int i) {
+        int n = b.length;
+        if (b[i] == '{' || b[i] == '[') return -1;
+        if (b[i] == '"') {
+            i++;
+            while (i < n && b[i] != '"') {
+                if (b[i] == '\\') i++;
+                i++;
+            }
+            return i < n ? i + 1 : -1;
+        }
+        while (i < n && b[i] != ',' && b[i] != '}' && b[i] != ' ' && b[i] != '\t'
+                && b[i] != '\n' && b[i] != '\r') {
+            i++;
+        }
+        return i;
+    }
+}
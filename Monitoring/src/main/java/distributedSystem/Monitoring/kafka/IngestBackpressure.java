@@ -0,0 +1,195 @@
+// src/main/java/distributedSystem/Monitoring/kafka/IngestBackpressure.java
+package distributedSystem.Monitoring.kafka;
+
+import distributedSystem.Monitoring.service.WindowAggregator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pauses the device-readings consumers while the aggregator cannot keep up, and resumes them once it has
+ * recovered (app.backpressure.*). Three signals, each with a pause threshold and a lower resume threshold
+ * so the containers do not flap:
+ * <ul>
+ *   <li>sealed deltas waiting for the flush writer (the database backlog),</li>
+ *   <li>old-generation heap occupancy after the last collection,</li>
+ *   <li>smoothed flush transaction time, while deltas are waiting (once the backlog has drained nothing
+ *   is written and the average would never decay, so it no longer holds the consumers).</li>
+ * </ul>
+ * Paused consumers keep polling (and idle events keep sealing shards), so the group membership holds and
+ * the backlog drains; readings wait in Kafka instead of the heap.
+ * <p>
+ * Pausing cannot free what the open windows hold: in event time a window only closes when newer readings
+ * move the watermark, and those wait in Kafka. A pause that is held by the heap alone therefore ends after
+ * {@code pause.max-heap-seconds}, and the heap signal stays disarmed until occupancy is back under its
+ * resume ratio, so ingest can close the windows instead of pausing again on the next check.
+ */
+@Component
+public class IngestBackpressure implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestBackpressure.class);
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final WindowAggregator aggregator;
+    private final boolean enabled;
+    private final long pausePending, resumePending;
+    private final double pauseHeap, resumeHeap;
+    private final double pauseWriteMs, resumeWriteMs;
+    private final long maxHeapPauseMillis;
+    private final MemoryPoolMXBean oldGen = oldGenPool();
+
+    private volatile boolean paused;
+    private long pausedSince;
+    // set when a heap pause timed out, cleared once the heap is back under the resume ratio
+    private boolean heapDisarmed;
+    private final Map<String, LongAdder> pauses = new ConcurrentHashMap<>();
+    private final LongAdder resumes = new LongAdder();
+    private final LongAdder heapTimeouts = new LongAdder();
+
+    public IngestBackpressure(
+            KafkaListenerEndpointRegistry registry,
+            WindowAggregator aggregator,
+            @Value("${app.backpressure.enabled:true}") boolean enabled,
+            @Value("${app.backpressure.pause.pending-deltas:500000}") long pausePending,
+            @Value("${app.backpressure.resume.pending-deltas:100000}") long resumePending,
+            @Value("${app.backpressure.pause.heap-ratio:0.85}") double pauseHeap,
+            @Value("${app.backpressure.resume.heap-ratio:0.70}") double resumeHeap,
+            @Value("${app.backpressure.pause.write-ms:10000}") double pauseWriteMs,
+            @Value("${app.backpressure.resume.write-ms:2000}") double resumeWriteMs,
+            @Value("${app.backpressure.pause.max-heap-seconds:60}") long maxHeapPauseSeconds
+    ) {
+        this.registry = registry;
+        this.aggregator = aggregator;
+        this.enabled = enabled;
+        this.pausePending = pausePending;
+        this.resumePending = Math.min(resumePending, pausePending);
+        this.pauseHeap = pauseHeap;
+        this.resumeHeap = Math.min(resumeHeap, pauseHeap);
+        this.pauseWriteMs = pauseWriteMs;
+        this.resumeWriteMs = Math.min(resumeWriteMs, pauseWriteMs);
+        this.maxHeapPauseMillis = Math.max(1, maxHeapPauseSeconds) * 1000;
+        for (String r : new String[]{"pending", "heap", "write_time"}) pauses.put(r, new LongAdder());
+    }
+
+    @Scheduled(fixedDelayString = "${app.backpressure.check-ms:1000}")
+    public void check() {
+        if (!enabled) return;
+        MessageListenerContainer container = registry.getListenerContainer(ShardOwnershipListener.LISTENER_ID);
+        if (container == null || !container.isRunning()) return;
+
+        boolean wasPaused = paused;
+        boolean nowPaused = update(System.currentTimeMillis(), aggregator.pendingDeltas(), heapRatio(),
+                aggregator.flushWriteMillis());
+        if (nowPaused == wasPaused) return;
+        if (paused) container.pause();
+        else container.resume();
+    }
+
+    /** Applies one sample of the signals taken at {@code nowMillis} and returns whether ingest should now be paused. */
+    boolean update(long nowMillis, long pending, double heap, double flushWriteMs) {
+        double writeMs = pending > 0 ? flushWriteMs : 0;
+        if (heapDisarmed && heap <= resumeHeap) heapDisarmed = false;
+        if (!paused) {
+            String cause = pending >= pausePending ? "pending"
+                    : heap >= pauseHeap && !heapDisarmed ? "heap"
+                    : writeMs >= pauseWriteMs ? "write_time"
+                    : null;
+            if (cause == null) return false;
+            paused = true;
+            pausedSince = nowMillis;
+            pauses.get(cause).increment();
+            log.warn("Pausing device-readings ({}): {} pending deltas, heap {}%, flush {} ms",
+                    cause, pending, Math.round(heap * 100), Math.round(writeMs));
+        } else if (pending <= resumePending && writeMs <= resumeWriteMs) {
+            if (heap <= resumeHeap || heapDisarmed) {
+                resumes.increment();
+                log.info("Resuming device-readings: {} pending deltas, heap {}%, flush {} ms",
+                        pending, Math.round(heap * 100), Math.round(writeMs));
+            } else if (nowMillis - pausedSince >= maxHeapPauseMillis) {
+                // only ingest can close the windows that hold this memory
+                heapDisarmed = true;
+                heapTimeouts.increment();
+                log.warn("Resuming device-readings with heap still at {}% after {} s paused; heap pauses off "
+                        + "until it is back under {}%", Math.round(heap * 100), (nowMillis - pausedSince) / 1000,
+                        Math.round(resumeHeap * 100));
+            } else {
+                return true;
+            }
+            paused = false;
+        }
+        return paused;
+    }
+
+    public boolean paused() {
+        return paused;
+    }
+
+    /**
+     * Old-generation occupancy after the last collection (what survives), or the whole heap's if unknown.
+     * The after-collection figure only changes on an old-generation collection, so the current occupancy
+     * caps it: once the pool is that empty now, the heap has recovered whether or not such a GC ran.
+     */
+    double heapRatio() {
+        if (oldGen != null) {
+            MemoryUsage after = oldGen.getCollectionUsage();
+            MemoryUsage current = oldGen.getUsage();
+            if (after != null && after.getMax() > 0 && after.getUsed() > 0) {
+                return (double) Math.min(after.getUsed(), current.getUsed()) / after.getMax();
+            }
+        }
+        Runtime rt = Runtime.getRuntime();
+        return (double) (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory();
+    }
+
+    private static MemoryPoolMXBean oldGenPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && (name.contains("Old") || name.contains("Tenured"))) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meters) {
+        Gauge.builder("monitoring.ingest.paused", this, b -> b.paused ? 1 : 0)
+                .description("1 while the device-readings consumers are paused by backpressure")
+                .register(meters);
+        pauses.forEach((cause, count) -> FunctionCounter.builder("monitoring.ingest.backpressure", count, LongAdder::sum)
+                .tag("event", "pause")
+                .tag("reason", cause)
+                .description("Device-readings consumers paused by backpressure")
+                .register(meters));
+        FunctionCounter.builder("monitoring.ingest.backpressure", resumes, LongAdder::sum)
+                .tag("event", "resume")
+                .tag("reason", "recovered")
+                .description("Device-readings consumers resumed after backpressure")
+                .register(meters);
+        FunctionCounter.builder("monitoring.ingest.backpressure", heapTimeouts, LongAdder::sum)
+                .tag("event", "resume")
+                .tag("reason", "heap_timeout")
+                .description("Device-readings consumers resumed with the heap still high after pause.max-heap-seconds")
+                .register(meters);
+        Gauge.builder("monitoring.ingest.heap.ratio", this, IngestBackpressure::heapRatio)
+                .description("Old-generation heap occupancy used for backpressure")
+                .register(meters);
+    }
+}
@@ -0,0 +1,56 @@
+// src/main/java/distributedSystem/Monitoring/kafka/IngestMetrics.java
+package distributedSystem.Monitoring.kafka;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meters of the device-readings listeners, registered up front so the per-record path only bumps
+ * counters: {@code monitoring.ingest.records{partition}} (rate = records/sec per partition) and
+ * {@code monitoring.ingest.parse} (payload decode + device id). A partition's counter is registered
+ * the first time it is seen and reused from an array afterwards; no tags are built per record.
+ */
+@Component
+public class IngestMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer parseTimer;
+    private volatile LongAdder[] records = new LongAdder[0];
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.parseTimer = Timer.builder("monitoring.ingest.parse")
+                .description("Time to decode one device reading and its device id")
+                .register(registry);
+    }
+
+    public void recordParse(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConsumed(int partition, long count) {
+        LongAdder[] r = records;
+        LongAdder adder = partition < r.length ? r[partition] : null;
+        (adder != null ? adder : register(partition)).add(count);
+    }
+
+    private synchronized LongAdder register(int partition) {
+        LongAdder[] r = records;
+        if (partition < r.length && r[partition] != null) return r[partition];
+        LongAdder adder = new LongAdder();
+        FunctionCounter.builder("monitoring.ingest.records", adder, LongAdder::sum)
+                .tag("partition", Integer.toString(partition))
+                .description("Device readings consumed")
+                .register(registry);
+        LongAdder[] grown = partition < r.length ? r.clone() : Arrays.copyOf(r, partition + 1);
+        grown[partition] = adder;
+        records = grown;
+        return adder;
+    }
+}
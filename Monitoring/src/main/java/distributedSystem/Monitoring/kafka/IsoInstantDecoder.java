@@ -0,0 +1,85 @@
+// src/main/java/distributedSystem/Monitoring/kafka/IsoInstantDecoder.java
+package distributedSystem.Monitoring.kafka;
+
+/**
+ * Decodes the simulator's fixed UTC format {@code YYYY-MM-DDTHH:MM:SS[.f...]Z} to epoch millis
+ * without creating an {@link java.time.Instant}. Fractions beyond milliseconds are truncated,
+ * matching {@code Instant.toEpochMilli()}.
+ * Returns {@link #INVALID} for anything else so callers can fall back to {@code Instant.parse}.
+ */
+public final class IsoInstantDecoder {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private IsoInstantDecoder() {}
+
+    public static long decodeEpochMillis(byte[] b, int from, int to) {
+        int len = to - from;
+        // shortest: 2025-01-01T00:00:00Z (20), longest: nanosecond fraction (30)
+        if (len < 20 || len > 30) return INVALID;
+        if (b[from + 4] != '-' || b[from + 7] != '-' || b[from + 10] != 'T'
+                || b[from + 13] != ':' || b[from + 16] != ':' || b[to - 1] != 'Z') {
+            return INVALID;
+        }
+
+        int year = digits(b, from, 4);
+        int month = digits(b, from + 5, 2);
+        int day = digits(b, from + 8, 2);
+        int hour = digits(b, from + 11, 2);
+        int minute = digits(b, from + 14, 2);
+        int second = digits(b, from + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) return INVALID;
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return INVALID;
+        }
+
+        int millis = 0;
+        int i = from + 19;
+        if (i < to - 1) {
+            if (b[i] != '.') return INVALID;
+            i++;
+            int fracDigits = to - 1 - i;
+            if (fracDigits < 1 || fracDigits > 9) return INVALID;
+            for (int k = 0; k < fracDigits; k++) {
+                int d = b[i + k] - '0';
+                if (d < 0 || d > 9) return INVALID;
+                if (k < 3) millis = millis * 10 + d;
+            }
+            for (int k = fracDigits; k < 3; k++) millis *= 10;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        long secs = days * 86_400L + hour * 3_600L + minute * 60L + second;
+        return secs * 1_000L + millis;
+    }
+
+    /** Parses {@code count} ASCII digits; -1 if any byte is not a digit. */
+    private static int digits(byte[] b, int off, int count) {
+        int v = 0;
+        for (int k = 0; k < count; k++) {
+            int d = b[off + k] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> ((year & 3) == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's days_from_civil). */
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+}
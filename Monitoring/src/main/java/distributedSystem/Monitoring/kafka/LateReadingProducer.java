@@ -0,0 +1,48 @@
+package distributedSystem.Monitoring.kafka;
+
+
+import distributedSystem.Monitoring.dto.LateReadingDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Side output of the window aggregator: readings rejected as late or future are counted and, when
+ * app.window.late-topic is set, published there so they can be inspected or re-processed.
+ */
+@Component
+public class LateReadingProducer implements MeterBinder {
+    private final KafkaTemplate<String, Object> kafka;
+    private final String topic;
+
+    private final LongAdder late = new LongAdder();
+    private final LongAdder future = new LongAdder();
+
+    public LateReadingProducer(KafkaTemplate<String, Object> kafka,
+                               @Value("${app.window.late-topic:}") String topic) {
+        this.kafka = kafka;
+        this.topic = topic;
+    }
+
+    public void send(LateReadingDto reading) {
+        ("future".equals(reading.reason()) ? future : late).add(reading.samples());
+        if (!topic.isBlank()) kafka.send(topic, String.valueOf(reading.deviceId()), reading);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("monitoring.window.rejected", late, LongAdder::sum)
+                .tag("reason", "late")
+                .description("Readings for windows already closed by the watermark")
+                .register(registry);
+        FunctionCounter.builder("monitoring.window.rejected", future, LongAdder::sum)
+                .tag("reason", "future")
+                .description("Readings with event time too far ahead of the wall clock")
+                .register(registry);
+    }
+}
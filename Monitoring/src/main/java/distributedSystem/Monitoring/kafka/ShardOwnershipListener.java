@@ -0,0 +1,74 @@
+// src/main/java/distributedSystem/Monitoring/kafka/ShardOwnershipListener.java
+package distributedSystem.Monitoring.kafka;
+
+import distributedSystem.Monitoring.service.WindowAggregator;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps WindowAggregator shard ownership in step with the device-readings consumers.
+ * All callbacks run on the consumer thread that owns (or owned) the partitions.
+ */
+@Component
+public class ShardOwnershipListener implements ConsumerAwareRebalanceListener {
+
+    /** Listener id of the device-readings endpoints; child containers get "-0", "-1", ... appended. */
+    public static final String LISTENER_ID = "device-readings";
+
+    private static final Logger log = LoggerFactory.getLogger(ShardOwnershipListener.class);
+
+    private final WindowAggregator aggregator;
+
+    public ShardOwnershipListener(WindowAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * With app.ingest.offsets-in-db, resumes each partition from the offset stored with its last flushed
+     * deltas; with app.wal.enabled, rehydrates the partition's buckets up to that position.
+     */
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        List<Integer> ids = partitions.stream().map(TopicPartition::partition).toList();
+        Map<Integer, Long> stored = aggregator.restorePartitions(ids);
+        Map<Integer, Long> positions = new HashMap<>();
+        for (TopicPartition tp : partitions) {
+            Long next = stored.get(tp.partition());
+            if (next != null) {
+                log.info("Resuming {} from stored offset {}", tp, next);
+                consumer.seek(tp, next);
+            }
+            // WAL recovery replays local state up to where consumption resumes; the recent series store
+            // checks that it continues exactly where its data ends
+            positions.put(tp.partition(), next != null ? next : consumer.position(tp));
+        }
+        aggregator.claimPartitions(ids, positions);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        aggregator.releasePartitions(partitions.stream().map(TopicPartition::partition).toList());
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        aggregator.releasePartitions(partitions.stream().map(TopicPartition::partition).toList());
+    }
+
+    /** No records for a while: seal anyway so the flush is not stuck waiting for the next reading. */
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        aggregator.sealOwnedShards();
+    }
+}
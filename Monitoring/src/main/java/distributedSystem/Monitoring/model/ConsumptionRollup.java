@@ -0,0 +1,33 @@
+// src/main/java/distributedSystem/Monitoring/model/ConsumptionRollup.java
+package distributedSystem.Monitoring.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Columns shared by the hourly/daily/monthly rollup tables (UTC buckets), see RollupWriter.
+ */
+@MappedSuperclass
+@Getter @Setter
+public abstract class ConsumptionRollup {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false, length = 128)
+    private String deviceId;
+
+    @Column(name = "bucket_start_utc", nullable = false)
+    private Instant bucketStartUtc;
+
+    @Column(name = "kwh", nullable = false)
+    private double kwh;
+
+    @Column(name = "sample_count", nullable = false)
+    private long sampleCount;
+
+    @Column(name = "updated_at_utc", nullable = false)
+    private Instant updatedAtUtc;
+}
@@ -0,0 +1,14 @@
+// src/main/java/distributedSystem/Monitoring/model/DailyConsumption.java
+package distributedSystem.Monitoring.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(
+        name = "consumption_daily",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"device_id", "bucket_start_utc"})
+)
+public class DailyConsumption extends ConsumptionRollup {
+}
@@ -0,0 +1,40 @@
+// src/main/java/distributedSystem/Monitoring/model/DeviceLatestWindow.java
+package distributedSystem.Monitoring.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Newest window_consumption row per device, kept current by the flush (see DeviceLatestWindows).
+ * Lets GET /monitoring start from one row per device instead of scanning the window history.
+ */
+@Entity
+@Table(
+        name = "device_latest_window",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"device_id"})
+)
+@Data @AllArgsConstructor @NoArgsConstructor
+public class DeviceLatestWindow {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false, length = 128)
+    private String deviceId;
+
+    @Column(name = "window_start_utc", nullable = false)
+    private Instant windowStartUtc;
+
+    @Column(name = "window_minutes", nullable = false)
+    private int windowMinutes;
+
+    @Column(name = "kwh", nullable = false)
+    private double kwh;
+
+    @Column(name = "sample_count", nullable = false)
+    private int sampleCount;
+
+    @Column(name = "updated_at_utc", nullable = false)
+    private Instant updatedAtUtc;
+}
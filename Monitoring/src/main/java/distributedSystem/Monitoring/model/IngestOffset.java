@@ -0,0 +1,37 @@
+// src/main/java/distributedSystem/Monitoring/model/IngestOffset.java
+package distributedSystem.Monitoring.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Next Kafka offset to consume per (group, topic, partition), written in the same transaction as
+ * the window deltas it covers (app.ingest.offsets-in-db=true). See IngestOffsetStore.
+ */
+@Entity
+@Table(
+        name = "ingest_offset",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"consumer_group", "topic", "partition_id"})
+)
+@Data @AllArgsConstructor @NoArgsConstructor
+public class IngestOffset {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "consumer_group", nullable = false, length = 255)
+    private String consumerGroup;
+
+    @Column(name = "topic", nullable = false, length = 255)
+    private String topic;
+
+    @Column(name = "partition_id", nullable = false)
+    private int partitionId;
+
+    @Column(name = "next_offset", nullable = false)
+    private long nextOffset;
+
+    @Column(name = "updated_at_utc", nullable = false)
+    private Instant updatedAtUtc;
+}
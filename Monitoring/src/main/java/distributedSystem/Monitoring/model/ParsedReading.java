@@ -0,0 +1,58 @@
+// src/main/java/distributedSystem/Monitoring/model/ParsedReading.java
+package distributedSystem.Monitoring.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mutable, reusable view of one device reading decoded straight from the Kafka record bytes.
+ * String fields are kept as offsets into {@link #source()} and only materialized on demand,
+ * so one instance per listener thread serves every message without per-record allocation.
+ */
+public final class ParsedReading {
+
+    private byte[] source;
+    private int deviceIdStart, deviceIdEnd;
+    private int timestampStart, timestampEnd;
+    private long timestampMillis;
+    private double valueKwh;
+
+    public void set(byte[] source, int deviceIdStart, int deviceIdEnd,
+                    int timestampStart, int timestampEnd, double valueKwh) {
+        this.source = source;
+        this.deviceIdStart = deviceIdStart;
+        this.deviceIdEnd = deviceIdEnd;
+        this.timestampStart = timestampStart;
+        this.timestampEnd = timestampEnd;
+        this.valueKwh = valueKwh;
+    }
+
+    /** Used by the Jackson fallback: re-encodes the two string fields into a small private buffer. */
+    public void set(DeviceReading dr) {
+        byte[] id = dr.device_id() == null ? new byte[0] : dr.device_id().getBytes(StandardCharsets.UTF_8);
+        byte[] ts = dr.timestamp() == null ? new byte[0] : dr.timestamp().getBytes(StandardCharsets.UTF_8);
+        byte[] both = new byte[id.length + ts.length];
+        System.arraycopy(id, 0, both, 0, id.length);
+        System.arraycopy(ts, 0, both, id.length, ts.length);
+        set(both, 0, id.length, id.length, both.length, dr.value_kwh());
+    }
+
+    public void setTimestampMillis(long timestampMillis) {
+        this.timestampMillis = timestampMillis;
+    }
+
+    public byte[] source() { return source; }
+    public int deviceIdStart() { return deviceIdStart; }
+    public int deviceIdEnd() { return deviceIdEnd; }
+    public int timestampStart() { return timestampStart; }
+    public int timestampEnd() { return timestampEnd; }
+    public long timestampMillis() { return timestampMillis; }
+    public double valueKwh() { return valueKwh; }
+
+    public String deviceId() {
+        return new String(source, deviceIdStart, deviceIdEnd - deviceIdStart, StandardCharsets.UTF_8);
+    }
+
+    public String timestamp() {
+        return new String(source, timestampStart, timestampEnd - timestampStart, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,23 @@
+// src/main/java/distributedSystem/Monitoring/model/RollupBackfill.java
+package distributedSystem.Monitoring.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Marks a rollup table (consumption_hourly / _daily / _monthly) as rebuilt from window_consumption,
+ * so it holds the history from before the rollups existed (see RollupWriter).
+ */
+@Entity
+@Table(name = "rollup_backfill")
+@Data @AllArgsConstructor @NoArgsConstructor
+public class RollupBackfill {
+    @Id
+    @Column(name = "table_name", length = 64)
+    private String tableName;
+
+    @Column(name = "completed_at_utc", nullable = false)
+    private Instant completedAtUtc;
+}
@@ -9,7 +9,7 @@ import java.time.Instant;
 @Entity
 @Table(
         name = "window_consumption",
-        uniqueConstraints = @UniqueConstraint(columnNames = {"device_id", "window_start_utc", "window_minutes"})
+        uniqueConstraints = @UniqueConstraint(name = "uk_window_consumption_device_window", columnNames = {"device_id", "window_start_utc", "window_minutes"})
 )
 @Data @AllArgsConstructor @NoArgsConstructor
 public class WindowConsumption {
@@ -0,0 +1,76 @@
+// src/main/java/distributedSystem/Monitoring/service/AggregatorShard.java
+package distributedSystem.Monitoring.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Buckets of one Kafka partition. Only the consumer thread that currently owns the partition
+ * touches {@link #store}, so updates need no locks or CAS. Ownership moves through the volatile
+ * {@link #owner} field: the old thread releases it (after sealing) and the new thread claims it,
+ * which gives the hand-over a happens-before edge.
+ */
+final class AggregatorShard {
+
+    final int partition;
+    final BucketStore store;
+
+    /** Consumer thread that owns this partition, null while unassigned. */
+    volatile Thread owner;
+
+    /** Last flush epoch this shard sealed for; owner-thread only. */
+    long sealedEpoch;
+
+    /** Highest event time applied so far, the partition's watermark; owner-thread only. */
+    long watermarkMillis = Long.MIN_VALUE;
+
+    /**
+     * Windows below this index are closed (the watermark passed their end by more than the allowed
+     * lateness) and take no more readings; owner-thread only.
+     */
+    long closedBefore = Long.MIN_VALUE;
+
+    /** {@link #closedBefore} as of the last eviction; owner-thread only. Eviction runs once per window close. */
+    long evictedBefore = Long.MIN_VALUE;
+
+    /** Offset after the last record applied to {@link #store}, -1 before the first; owner-thread only. */
+    long nextOffset = -1;
+
+    /** {@link #nextOffset} as of the last published seal; owner-thread only. */
+    long sealedNextOffset = -1;
+
+    /** An early flush was requested for the dirty buckets since the last seal; owner-thread only. */
+    boolean flushRequested;
+
+    /** Local write-ahead log of {@link #store}, null without app.wal.enabled; owner-thread only. */
+    ShardWal wal;
+
+    /** Bucket count as of the last seal, readable from any thread. */
+    volatile int bucketCount;
+
+    /**
+     * Second half of the double buffer: the flush writer hands a written {@link SealedDeltas} back
+     * here and the owner reuses it for its next seal.
+     */
+    final AtomicReference<SealedDeltas> spare = new AtomicReference<>();
+
+    AggregatorShard(int partition, BucketStore store) {
+        this.partition = partition;
+        this.store = store;
+    }
+
+    boolean ownedByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    /** Owner thread: an empty buffer to seal into, recycled if the writer has returned one. */
+    SealedDeltas takeBuffer() {
+        SealedDeltas buf = spare.getAndSet(null);
+        return buf != null ? buf : new SealedDeltas(partition, bucketCount);
+    }
+
+    /** Flush writer: gives a written buffer back for reuse. */
+    void recycle(SealedDeltas buf) {
+        buf.clear();
+        spare.lazySet(buf);
+    }
+}
@@ -0,0 +1,68 @@
+// src/main/java/distributedSystem/Monitoring/service/AggregatorWal.java
+package distributedSystem.Monitoring.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Settings and per-partition entry point for {@link ShardWal} (app.wal.*).
+ * With app.wal.enabled=false every method is a no-op and shards run purely in memory.
+ */
+@Component
+public class AggregatorWal {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregatorWal.class);
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long snapshotMillis;
+
+    public AggregatorWal(
+            @Value("${app.wal.enabled:false}") boolean enabled,
+            @Value("${app.wal.dir:./data/wal}") String dir,
+            @Value("${app.wal.segment-mb:64}") int segmentMb,
+            @Value("${app.wal.snapshot-seconds:60}") long snapshotSeconds
+    ) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentBytes = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(1, segmentMb) * 1024L * 1024L);
+        this.snapshotMillis = Math.max(1, snapshotSeconds) * 1000L;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    long snapshotIntervalMillis() {
+        return snapshotMillis;
+    }
+
+    /**
+     * Rehydrates {@code store} (a fresh shard) for consumer position {@code position} and opens the
+     * partition's log. Returns null when disabled or when the files cannot be used (the shard then
+     * starts empty, as without a WAL).
+     */
+    ShardWal open(int partition, long position, BucketStore store) {
+        if (!enabled) return null;
+        Path partitionDir = dir.resolve("p" + partition);
+        long t0 = System.nanoTime();
+        try {
+            ShardWal.Recovery r = ShardWal.recover(partitionDir, position, store);
+            ShardWal wal = ShardWal.open(partitionDir, position, store, segmentBytes);
+            log.info("Recovered partition {} at offset {} in {} ms: snapshot gen {} (offset {}, {} buckets), "
+                            + "{} log records replayed, {} skipped",
+                    partition, position, (System.nanoTime() - t0) / 1_000_000,
+                    r.generation(), r.snapshotOffset(), r.snapshotBuckets(), r.replayedRecords(), r.skippedRecords());
+            return wal;
+        } catch (IOException | RuntimeException e) {
+            log.warn("WAL for partition {} unusable, starting without it: {}", partition, e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// src/main/java/distributedSystem/Monitoring/service/BatchSeriesService.java
+package distributedSystem.Monitoring.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Array;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Raw windows of many devices over one [from, to) in a single query ({@code device_id = ANY(?)}),
+ * streamed grouped per device, so a dashboard needs one request and one round trip instead of one per
+ * device. Rows come through a server-side cursor ordered by (device_id, window_start_utc) and are written
+ * as they arrive; devices without windows in the range are still listed, with no points. Device ids are
+ * ordered COLLATE "C" so the database order matches the sorted id list the gaps are filled from.
+ */
+@Service
+public class BatchSeriesService {
+
+    /** Validated request: canonical device ids, sorted as the query returns them. */
+    public record Query(String[] deviceIds, Instant from, Instant to) {}
+
+    private static final String SQL = """
+            SELECT device_id, window_start_utc, kwh, sample_count
+              FROM window_consumption
+             WHERE device_id = ANY(?) AND window_start_utc >= ? AND window_start_utc < ?
+             ORDER BY device_id COLLATE "C", window_start_utc
+            """;
+
+    private final JdbcTemplate cursor;
+    private final TransactionTemplate readOnlyTx;
+    private final DeviceIdCodec deviceIds;
+    private final ThresholdTable thresholds;
+    private final ObjectMapper objectMapper;
+    private final int maxDevices;
+
+    public BatchSeriesService(
+            JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            DeviceIdCodec deviceIds,
+            ThresholdTable thresholds,
+            ObjectMapper objectMapper,
+            @Value("${app.range.fetch-size:2000}") int fetchSize,
+            @Value("${app.batch-series.max-devices:500}") int maxDevices
+    ) {
+        this.cursor = new JdbcTemplate(jdbc.getDataSource());
+        this.cursor.setFetchSize(Math.max(1, fetchSize));
+        this.readOnlyTx = new TransactionTemplate(tx.getTransactionManager());
+        this.readOnlyTx.setReadOnly(true);
+        this.deviceIds = deviceIds;
+        this.thresholds = thresholds;
+        this.objectMapper = objectMapper;
+        this.maxDevices = Math.max(1, maxDevices);
+    }
+
+    /** Either explicit device ids or every device of {@code userId} (per device_monitoring_ref). */
+    public Query query(Collection<String> ids, Long userId, Instant from, Instant to) {
+        boolean byDevice = ids != null && !ids.isEmpty();
+        if (byDevice == (userId != null)) throw new IllegalArgumentException("Exactly one of deviceIds or userId is required");
+        if (!from.isBefore(to)) throw new IllegalArgumentException("'from' must be before 'to'");
+
+        TreeSet<String> canonical = new TreeSet<>();
+        if (byDevice) {
+            for (String id : ids) {
+                String c = deviceIds.canonical(id);
+                if (c == null) throw new IllegalArgumentException("Invalid deviceId: " + id);
+                canonical.add(c);
+            }
+        } else {
+            for (long id : thresholds.devicesOf(userId)) canonical.add(deviceIds.format(id));
+        }
+        if (canonical.size() > maxDevices) {
+            throw new IllegalArgumentException(canonical.size() + " devices requested, max " + maxDevices);
+        }
+        return new Query(canonical.toArray(String[]::new), from, to);
+    }
+
+    /** Streams {@code {"from_utc", "to_utc", "devices": [{"device_id", "points": [...]}, ...]}}; does not close {@code out}. */
+    public void write(Query q, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("from_utc", q.from().toString());
+            json.writeStringField("to_utc", q.to().toString());
+            json.writeArrayFieldStart("devices");
+            if (q.deviceIds().length > 0) {
+                try {
+                    readOnlyTx.executeWithoutResult(status -> stream(q, json));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private void stream(Query q, JsonGenerator json) {
+        String[] ids = q.deviceIds();
+        int[] next = {0};            // index of the next device not yet opened
+        String[] open = {null};      // device whose points array is open
+        cursor.query(SQL, ps -> {
+            Array array = ps.getConnection().createArrayOf("varchar", ids);
+            ps.setArray(1, array);
+            ps.setObject(2, q.from().atOffset(ZoneOffset.UTC));
+            ps.setObject(3, q.to().atOffset(ZoneOffset.UTC));
+        }, rs -> {
+            try {
+                String device = rs.getString(1);
+                if (!device.equals(open[0])) {
+                    if (open[0] != null) endDevice(json);
+                    // devices sorting before this one had no rows
+                    while (next[0] < ids.length && ids[next[0]].compareTo(device) < 0) emptyDevice(json, ids[next[0]++]);
+                    if (next[0] < ids.length && ids[next[0]].equals(device)) next[0]++;
+                    startDevice(json, device);
+                    open[0] = device;
+                }
+                json.writeStartObject();
+                json.writeStringField("ts_utc", rs.getObject(2, OffsetDateTime.class).toInstant().toString());
+                json.writeNumberField("kwh", rs.getDouble(3));
+                json.writeNumberField("samples", rs.getInt(4));
+                json.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);   // client went away: abort the cursor
+            }
+        });
+        try {
+            if (open[0] != null) endDevice(json);
+            while (next[0] < ids.length) emptyDevice(json, ids[next[0]++]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void startDevice(JsonGenerator json, String device) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("device_id", device);
+        json.writeArrayFieldStart("points");
+    }
+
+    private static void endDevice(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private static void emptyDevice(JsonGenerator json, String device) throws IOException {
+        startDevice(json, device);
+        endDevice(json);
+    }
+}
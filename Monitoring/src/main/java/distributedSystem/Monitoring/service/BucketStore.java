@@ -0,0 +1,84 @@
+// src/main/java/distributedSystem/Monitoring/service/BucketStore.java
+package distributedSystem.Monitoring.service;
+
+/**
+ * In-memory state of the open (device, window) buckets: running totals for alerting,
+ * deltas pending the next DB flush and the "already alerted" flag.
+ * Windows are addressed by index (window start / window size) so keys stay primitive.
+ * Implementations are single-writer: only the owning shard's consumer thread may call them.
+ */
+public interface BucketStore {
+
+    /** Returned by {@link #add} when the bucket has already raised its alert. */
+    double ALERTED = Double.NaN;
+
+    enum Kind {
+        OBJECT(Long.MAX_VALUE),
+        PACKED(PackedBucketStore.MAX_DEVICE_ID);
+
+        private final long maxDeviceId;
+
+        Kind(long maxDeviceId) {
+            this.maxDeviceId = maxDeviceId;
+        }
+
+        public static Kind of(String kind) {
+            return valueOf(kind.trim().toUpperCase());
+        }
+
+        /** Whether this kind of store can key buckets of {@code deviceId}. */
+        public boolean accepts(long deviceId) {
+            return deviceId >= 0 && deviceId <= maxDeviceId;
+        }
+    }
+
+    @FunctionalInterface
+    interface DeltaSink {
+        void accept(long deviceId, long windowIndex, double kwh, int samples);
+    }
+
+    @FunctionalInterface
+    interface BucketVisitor {
+        void accept(long deviceId, long windowIndex, double totalKwh, int totalSamples, boolean alerted);
+    }
+
+    static BucketStore create(String kind, int initialCapacity) {
+        return create(Kind.of(kind), initialCapacity);
+    }
+
+    static BucketStore create(Kind kind, int initialCapacity) {
+        return switch (kind) {
+            case OBJECT -> new ObjectBucketStore();
+            case PACKED -> new PackedBucketStore(initialCapacity);
+        };
+    }
+
+    /**
+     * Adds readings to the bucket's totals and pending delta, creating it if needed.
+     * Returns the running total after the update, or {@link #ALERTED} (NaN) if the bucket already alerted.
+     */
+    double add(long deviceId, long windowIndex, double kwh, int samples);
+
+    /** Running total of the bucket whether or not it alerted, 0 if it does not exist. */
+    double total(long deviceId, long windowIndex);
+
+    /** Sets the alerted flag; true only for the call that actually flipped it. */
+    boolean markAlerted(long deviceId, long windowIndex);
+
+    /** Buckets with a pending delta (an upper bound after {@link #evictBefore}); drives early flushes. */
+    int dirtyCount();
+
+    /** Hands every non-empty pending delta to {@code sink} and resets it. Returns the number drained. */
+    int drainPending(DeltaSink sink);
+
+    /** Drops all buckets whose window index is below {@code windowIndex}. Returns the number removed. */
+    int evictBefore(long windowIndex);
+
+    /** Recovery: adds to the bucket's totals (not its pending delta) and sets the alerted flag if given. */
+    void restore(long deviceId, long windowIndex, double totalKwh, int totalSamples, boolean alerted);
+
+    /** Visits every bucket's totals, e.g. for a snapshot. */
+    void forEachBucket(BucketVisitor visitor);
+
+    int size();
+}
@@ -0,0 +1,101 @@
+// src/main/java/distributedSystem/Monitoring/service/ConsumptionHistoryService.java
+package distributedSystem.Monitoring.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumption of one device over [from, to) in steps, read from the coarsest table that can answer
+ * exactly: monthly, daily or hourly rollups when the range and step line up with their UTC buckets,
+ * raw windows otherwise. Rollups are only used once they hold the full history ({@link RollupWriter#ready()}).
+ */
+@Service
+public class ConsumptionHistoryService {
+
+    /** Upper bound on returned points, so a typo in step cannot build a huge response. */
+    static final int MAX_POINTS = 10_000;
+
+    private static final RollupResolution[] COARSEST_FIRST = {
+            RollupResolution.MONTH, RollupResolution.DAY, RollupResolution.HOUR};
+
+    private final JdbcTemplate jdbc;
+    private final DeviceIdCodec deviceIds;
+    private final RollupWriter rollups;
+
+    public ConsumptionHistoryService(
+            JdbcTemplate jdbc,
+            DeviceIdCodec deviceIds,
+            RollupWriter rollups
+    ) {
+        this.jdbc = jdbc;
+        this.deviceIds = deviceIds;
+        this.rollups = rollups;
+    }
+
+    /** Coarsest resolution whose buckets tile both the range and every step exactly. */
+    public RollupResolution resolutionFor(Instant from, Instant to, HistoryStep step) {
+        if (rollups.ready()) {
+            for (RollupResolution r : COARSEST_FIRST) {
+                if (r.divides(step) && r.isAligned(from) && r.isAligned(to)) return r;
+            }
+        }
+        return RollupResolution.RAW;
+    }
+
+    public Map<String, Object> history(String deviceId, Instant from, Instant to, HistoryStep step) {
+        String id = deviceIds.canonical(deviceId);
+        if (id == null) throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
+        if (!from.isBefore(to)) throw new IllegalArgumentException("'from' must be before 'to'");
+
+        long points = step.indexOf(from, to.minusMillis(1)) + 1;
+        if (points > MAX_POINTS) {
+            throw new IllegalArgumentException("Range/step gives " + points + " points, max " + MAX_POINTS);
+        }
+
+        RollupResolution resolution = resolutionFor(from, to, step);
+        double[] kwh = new double[(int) points];
+        long[] samples = new long[(int) points];
+
+        String sql = resolution == RollupResolution.RAW
+                ? """
+                  SELECT window_start_utc, kwh, sample_count
+                    FROM window_consumption
+                   WHERE device_id = ? AND window_start_utc >= ? AND window_start_utc < ?
+                  """
+                : """
+                  SELECT bucket_start_utc, kwh, sample_count
+                    FROM %s
+                   WHERE device_id = ? AND bucket_start_utc >= ? AND bucket_start_utc < ?
+                  """.formatted(resolution.table());
+        jdbc.query(sql, rs -> {
+            int i = (int) step.indexOf(from, rs.getTimestamp(1).toInstant());
+            kwh[i] += rs.getDouble(2);
+            samples[i] += rs.getLong(3);
+        }, id, Timestamp.from(from), Timestamp.from(to));
+
+        List<Map<String, Object>> out = new ArrayList<>((int) points);
+        for (int i = 0; i < points; i++) {
+            out.add(Map.of(
+                    "ts_utc", step.start(from, i).toString(),
+                    "kwh", kwh[i],
+                    "samples", samples[i]
+            ));
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("device_id", id);
+        body.put("from_utc", from.toString());
+        body.put("to_utc", to.toString());
+        body.put("step", step.toString());
+        body.put("resolution", resolution.name().toLowerCase());
+        body.put("points", out);
+        return body;
+    }
+}
@@ -0,0 +1,179 @@
+// src/main/java/distributedSystem/Monitoring/service/ConsumptionRangeService.java
+package distributedSystem.Monitoring.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Consumption of one device over an arbitrary [from, to) bucketed by step in SQL and streamed as JSON.
+ * <p>
+ * Fixed steps bin with date_bin (origin {@code from}); month steps join against generated calendar-month
+ * buckets, matching {@link HistoryStep#start}. Rows are read through a server-side cursor
+ * (app.range.fetch-size rows per round trip, inside a read-only transaction as the driver requires) and
+ * written to the response as they arrive, so a year of windows never sits in memory. Buckets without any
+ * window are omitted. {@code sum} is read from the coarsest rollup that lines up with the range;
+ * {@code avg}, {@code min} and {@code max} are over window totals and always read raw windows.
+ * <p>
+ * With {@code maxPoints} the bucketed rows pass through a {@link SeriesDownsampler} (LTTB by default,
+ * or min/max envelope) on their way to the response, unless the step already yields few enough buckets.
+ */
+@Service
+public class ConsumptionRangeService {
+
+    /** Aggregate applied to the window totals of each bucket. */
+    public enum Fn {
+        SUM("sum"), AVG("avg"), MIN("min"), MAX("max");
+
+        private final String sql;
+
+        Fn(String sql) {
+            this.sql = sql;
+        }
+
+        public static Fn parse(String text) {
+            for (Fn f : values()) {
+                if (f.sql.equalsIgnoreCase(text == null ? "" : text.trim())) return f;
+            }
+            throw new IllegalArgumentException("Invalid fn: " + text + " (expected sum, avg, min or max)");
+        }
+    }
+
+    /** A validated query; building it checks the arguments before any byte of the response is written. */
+    public record Query(String deviceId, Instant from, Instant to, HistoryStep step, Fn fn, RollupResolution resolution,
+                        SeriesDownsampler.Mode downsample, int maxPoints) {}
+
+    private static final String FIXED_SQL = """
+            SELECT date_bin(make_interval(secs => ?), w.%2$s, ?) AS bucket,
+                   %3$s(w.kwh), sum(w.sample_count)
+              FROM %1$s w
+             WHERE w.device_id = ? AND w.%2$s >= ? AND w.%2$s < ?
+             GROUP BY bucket
+             ORDER BY bucket
+            """;
+
+    private static final String MONTHS_SQL = """
+            WITH b AS (
+              SELECT (?::timestamp + make_interval(months => (i * ?)::int)) AT TIME ZONE 'UTC' AS bucket,
+                     (?::timestamp + make_interval(months => ((i + 1) * ?)::int)) AT TIME ZONE 'UTC' AS bucket_end
+                FROM generate_series(0, ?) AS i
+            )
+            SELECT b.bucket, %3$s(w.kwh), sum(w.sample_count)
+              FROM b
+              JOIN %1$s w ON w.%2$s >= b.bucket AND w.%2$s < b.bucket_end
+             WHERE w.device_id = ? AND w.%2$s >= ? AND w.%2$s < ?
+             GROUP BY b.bucket
+             ORDER BY b.bucket
+            """;
+
+    private final JdbcTemplate cursor;
+    private final TransactionTemplate readOnlyTx;
+    private final DeviceIdCodec deviceIds;
+    private final ConsumptionHistoryService history;
+    private final ObjectMapper objectMapper;
+
+    public ConsumptionRangeService(
+            JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            DeviceIdCodec deviceIds,
+            ConsumptionHistoryService history,
+            ObjectMapper objectMapper,
+            @Value("${app.range.fetch-size:2000}") int fetchSize
+    ) {
+        this.cursor = new JdbcTemplate(jdbc.getDataSource());
+        this.cursor.setFetchSize(Math.max(1, fetchSize));
+        this.readOnlyTx = new TransactionTemplate(tx.getTransactionManager());
+        this.readOnlyTx.setReadOnly(true);
+        this.deviceIds = deviceIds;
+        this.history = history;
+        this.objectMapper = objectMapper;
+    }
+
+    public Query query(String deviceId, Instant from, Instant to, String step, String fn,
+                       int maxPoints, String downsample) {
+        String id = deviceIds.canonical(deviceId);
+        if (id == null) throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
+        if (!from.isBefore(to)) throw new IllegalArgumentException("'from' must be before 'to'");
+        HistoryStep s = HistoryStep.parse(step);
+        Fn f = Fn.parse(fn);
+        RollupResolution resolution = f == Fn.SUM ? history.resolutionFor(from, to, s) : RollupResolution.RAW;
+
+        SeriesDownsampler.Mode mode = SeriesDownsampler.Mode.NONE;
+        if (maxPoints != 0) {
+            if (maxPoints < 3) throw new IllegalArgumentException("maxPoints must be >= 3 (or 0 for all points)");
+            long buckets = s.indexOf(from, to.minusMillis(1)) + 1;
+            if (buckets > maxPoints) mode = SeriesDownsampler.Mode.parse(downsample);
+        }
+        return new Query(id, from, to, s, f, resolution, mode, mode == SeriesDownsampler.Mode.NONE ? 0 : maxPoints);
+    }
+
+    /** Streams the buckets of {@code q} as a JSON object to {@code out}; does not close it. */
+    public void write(Query q, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("device_id", q.deviceId());
+            json.writeStringField("from_utc", q.from().toString());
+            json.writeStringField("to_utc", q.to().toString());
+            json.writeStringField("step", q.step().toString());
+            json.writeStringField("fn", q.fn().sql);
+            json.writeStringField("resolution", q.resolution().name().toLowerCase());
+            json.writeStringField("downsample", q.downsample().name().toLowerCase());
+            if (q.maxPoints() > 0) json.writeNumberField("max_points", q.maxPoints());
+            json.writeArrayFieldStart("points");
+
+            SeriesDownsampler points = SeriesDownsampler.of(q.downsample(), q.maxPoints(),
+                    q.from().toEpochMilli(), q.to().toEpochMilli(), (ts, value, samples) -> {
+                        json.writeStartObject();
+                        json.writeStringField("ts_utc", Instant.ofEpochMilli(ts).toString());
+                        json.writeNumberField("value", value);
+                        json.writeNumberField("samples", samples);
+                        json.writeEndObject();
+                    });
+            try {
+                readOnlyTx.executeWithoutResult(status -> read(q, rs -> {
+                    try {
+                        points.accept(rs.getObject(1, OffsetDateTime.class).toInstant().toEpochMilli(),
+                                rs.getDouble(2), rs.getLong(3));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);   // client went away: abort the cursor
+                    }
+                }));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            points.finish();
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private void read(Query q, RowCallbackHandler row) {
+        boolean raw = q.resolution() == RollupResolution.RAW;
+        String table = raw ? "window_consumption" : q.resolution().table();
+        String ts = raw ? "window_start_utc" : "bucket_start_utc";
+        OffsetDateTime from = q.from().atOffset(ZoneOffset.UTC), to = q.to().atOffset(ZoneOffset.UTC);
+
+        if (!q.step().isMonths()) {
+            cursor.query(FIXED_SQL.formatted(table, ts, q.fn().sql), row,
+                    q.step().millis() / 1000.0, from, q.deviceId(), from, to);
+            return;
+        }
+        LocalDateTime origin = LocalDateTime.ofInstant(q.from(), ZoneOffset.UTC);
+        int months = (int) q.step().amount();
+        int lastBucket = (int) q.step().indexOf(q.from(), q.to().minusMillis(1));
+        cursor.query(MONTHS_SQL.formatted(table, ts, q.fn().sql), row,
+                origin, months, origin, months, lastBucket, q.deviceId(), from, to);
+    }
+}
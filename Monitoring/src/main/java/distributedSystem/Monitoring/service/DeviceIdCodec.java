@@ -0,0 +1,94 @@
+// src/main/java/distributedSystem/Monitoring/service/DeviceIdCodec.java
+package distributedSystem.Monitoring.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts between external device ids ("device-001", "001", "1") and the numeric id used as key
+ * everywhere in Monitoring.
+ * Parsing is a plain digit scan (same result as the old {@code replaceAll("\\D+", "")}), and the
+ * canonical names used in window_consumption are cached in a bounded table indexed by numeric id,
+ * so both directions are allocation-free for ids below {@code app.device-id-cache-size}.
+ */
+@Component
+public class DeviceIdCodec {
+
+    /** Returned by the parse methods when the input contains no usable digits. */
+    public static final long NO_ID = -1L;
+
+    private static final int MAX_DIGITS = 18; // always fits in a long
+
+    private final String prefix;
+    private final int pad;
+    // canonical name per numeric id; racy publication is fine, Strings are immutable
+    private final String[] names;
+
+    public DeviceIdCodec(
+            @Value("${app.device-prefix:device-}") String prefix,
+            @Value("${app.device-id-pad:3}") int pad,
+            @Value("${app.device-id-cache-size:131072}") int cacheSize
+    ) {
+        this.prefix = prefix;
+        this.pad = Math.max(0, pad);
+        this.names = new String[Math.max(0, cacheSize)];
+    }
+
+    /** Numeric id from any string containing the id digits, or {@link #NO_ID}. */
+    public long parse(CharSequence deviceId) {
+        if (deviceId == null) return NO_ID;
+        long v = 0;
+        int digits = 0;
+        for (int i = 0, n = deviceId.length(); i < n; i++) {
+            char c = deviceId.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_DIGITS) return NO_ID;
+                v = v * 10 + (c - '0');
+            }
+        }
+        return digits == 0 ? NO_ID : v;
+    }
+
+    /** Same as {@link #parse(CharSequence)} over a byte range of a raw payload (ASCII digits). */
+    public long parse(byte[] b, int from, int to) {
+        long v = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            int d = b[i] - '0';
+            if (d >= 0 && d <= 9) {
+                if (++digits > MAX_DIGITS) return NO_ID;
+                v = v * 10 + d;
+            }
+        }
+        return digits == 0 ? NO_ID : v;
+    }
+
+    /** Canonical name as stored in window_consumption, e.g. 1 -> "device-001". */
+    public String format(long id) {
+        if (id < 0) throw new IllegalArgumentException("Invalid deviceId: " + id);
+        if (id < names.length) {
+            String cached = names[(int) id];
+            if (cached == null) {
+                cached = build(id);
+                names[(int) id] = cached;
+            }
+            return cached;
+        }
+        return build(id);
+    }
+
+    /** Canonical form of any accepted spelling, or {@code null} if it has no digits. */
+    public String canonical(String deviceId) {
+        long id = parse(deviceId);
+        return id == NO_ID ? null : format(id);
+    }
+
+    private String build(long id) {
+        String digits = Long.toString(id);
+        int zeros = Math.max(0, pad - digits.length());
+        StringBuilder sb = new StringBuilder(prefix.length() + zeros + digits.length());
+        sb.append(prefix);
+        for (int i = 0; i < zeros; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+}
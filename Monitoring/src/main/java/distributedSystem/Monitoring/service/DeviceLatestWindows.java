@@ -0,0 +1,255 @@
+// src/main/java/distributedSystem/Monitoring/service/DeviceLatestWindows.java
+package distributedSystem.Monitoring.service;
+
+import distributedSystem.Monitoring.dto.DeviceSummaryDto;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Latest window per device for GET /monitoring, in memory and in device_latest_window.
+ * <p>
+ * Each flush upserts, in its transaction, the newest window it touched per device from the freshly
+ * written window_consumption totals, and the rows it changed are applied to the in-memory view after
+ * the commit. The table gives a cold start one row per device (it is backfilled once from
+ * window_consumption when empty) and a periodic reload picks up devices flushed by other instances.
+ * Reads never touch the database: filtering and paging walk the view, sorted by device id.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class DeviceLatestWindows {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceLatestWindows.class);
+
+    /** One page of summaries and the number of devices matching the filter. */
+    public record Page(List<DeviceSummaryDto> items, int total) {}
+
+    private record Latest(Instant windowStartUtc, int windowMinutes, double kwh, int sampleCount, Instant updatedAtUtc) {}
+
+    private static final String UPSERT_HEAD = """
+            INSERT INTO device_latest_window AS l
+              (device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc)
+            SELECT wc.device_id, wc.window_start_utc, wc.window_minutes, wc.kwh, wc.sample_count, wc.updated_at_utc
+              FROM window_consumption wc
+              JOIN (VALUES""";
+    private static final String UPSERT_TAIL = """
+                   ) AS v(device_id, window_start_utc)
+                ON wc.device_id = v.device_id AND wc.window_start_utc = v.window_start_utc
+             WHERE wc.window_minutes = ?
+               AND wc.window_start_utc BETWEEN ? AND ?
+            ON CONFLICT (device_id)
+            DO UPDATE SET
+              window_start_utc = EXCLUDED.window_start_utc,
+              window_minutes = EXCLUDED.window_minutes,
+              kwh = EXCLUDED.kwh,
+              sample_count = EXCLUDED.sample_count,
+              updated_at_utc = EXCLUDED.updated_at_utc
+             WHERE l.window_start_utc <= EXCLUDED.window_start_utc
+            RETURNING device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final DeviceIdCodec deviceIds;
+    private final ThresholdTable thresholds;
+    private final LastSeenService lastSeen;
+    private final MultiRowUpsert upsert;
+
+    private final ConcurrentSkipListMap<String, Latest> view = new ConcurrentSkipListMap<>();
+
+    // flush writer thread only: newest window per device of the flush being written
+    private long[] rowDevice = new long[256];
+    private long[] rowWindow = new long[256];
+
+    public DeviceLatestWindows(
+            JdbcTemplate jdbc,
+            DeviceIdCodec deviceIds,
+            ThresholdTable thresholds,
+            LastSeenService lastSeen,
+            @Value("${app.flush.chunk-size:1000}") int chunkSize
+    ) {
+        this.jdbc = jdbc;
+        this.deviceIds = deviceIds;
+        this.thresholds = thresholds;
+        this.lastSeen = lastSeen;
+        this.upsert = new MultiRowUpsert(UPSERT_HEAD, 2, UPSERT_TAIL, chunkSize);
+    }
+
+    /** Cold start: one row per device from device_latest_window, backfilled first if the table is new. */
+    @PostConstruct
+    public void load() {
+        try {
+            Boolean empty = jdbc.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM device_latest_window)", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                int n = jdbc.update("""
+                        INSERT INTO device_latest_window
+                          (device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc)
+                        SELECT DISTINCT ON (device_id)
+                               device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc
+                          FROM window_consumption
+                         ORDER BY device_id, window_start_utc DESC
+                        ON CONFLICT (device_id) DO NOTHING
+                        """);
+                if (n > 0) log.info("Backfilled device_latest_window with {} devices", n);
+            }
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("Could not load device_latest_window, the device list fills as windows are flushed: {}", e.toString());
+        }
+    }
+
+    /** Picks up devices written by other instances; rows never replace a newer window in the view. */
+    @Scheduled(
+            initialDelayString = "#{${app.latest-windows.refresh-seconds:30} * 1000}",
+            fixedDelayString = "#{${app.latest-windows.refresh-seconds:30} * 1000}"
+    )
+    public void reload() {
+        jdbc.query("""
+                SELECT device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc
+                  FROM device_latest_window
+                """, (ResultSet rs) -> {
+            apply(rs);
+        });
+    }
+
+    /**
+     * Flush writer, inside the flush transaction after window_consumption was written: upserts the newest
+     * window of each device in {@code merged} (sorted by device, window) and applies the changed rows
+     * to the view once the transaction commits.
+     */
+    public void write(SealedDeltas merged, int windowMinutes, long windowSizeMillis) {
+        int n = collect(merged);
+        if (n == 0) return;
+
+        long minWindow = Long.MAX_VALUE, maxWindow = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            minWindow = Math.min(minWindow, rowWindow[i]);
+            maxWindow = Math.max(maxWindow, rowWindow[i]);
+        }
+        OffsetDateTime lo = utc(minWindow * windowSizeMillis), hi = utc(maxWindow * windowSizeMillis);
+
+        List<Object[]> changed = new ArrayList<>();
+        int chunkSize = upsert.chunkSize();
+        for (int from = 0; from < n; from += chunkSize) {
+            int rows = Math.min(chunkSize, n - from);
+            int start = from;
+            jdbc.query(upsert.sqlFor(rows), (PreparedStatement ps) -> {
+                int p = 1;
+                for (int i = start; i < start + rows; i++) {
+                    ps.setString(p++, deviceIds.format(rowDevice[i]));
+                    ps.setObject(p++, utc(rowWindow[i] * windowSizeMillis));
+                }
+                ps.setInt(p++, windowMinutes);
+                ps.setObject(p++, lo);
+                ps.setObject(p, hi);
+            }, (ResultSet rs) -> {
+                changed.add(new Object[]{rs.getString(1), rs.getObject(2, OffsetDateTime.class).toInstant(),
+                        rs.getInt(3), rs.getDouble(4), rs.getInt(5), rs.getObject(6, OffsetDateTime.class).toInstant()});
+            });
+        }
+        afterCommit(() -> {
+            for (Object[] r : changed) {
+                put((String) r[0], new Latest((Instant) r[1], (int) r[2], (double) r[3], (int) r[4], (Instant) r[5]));
+            }
+        });
+    }
+
+    /**
+     * Summaries sorted by device id, optionally only the devices of {@code userId} (per device_monitoring_ref)
+     * or one device. {@code size <= 0} returns every match.
+     */
+    public Page page(Long userId, String deviceId, int page, int size) {
+        if (deviceId != null && !deviceId.isBlank()) {
+            String id = deviceIds.canonical(deviceId);
+            if (id == null) throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
+            Latest l = view.get(id);
+            boolean match = l != null && (userId == null || ownedBy(id, userId));
+            return new Page(match ? List.of(summary(id, l)) : List.of(), match ? 1 : 0);
+        }
+        if (page < 0) throw new IllegalArgumentException("page must be >= 0");
+
+        long skip = size > 0 ? (long) page * size : 0;
+        List<DeviceSummaryDto> items = new ArrayList<>(size > 0 ? size : view.size());
+        int total = 0;
+        for (var e : view.entrySet()) {
+            if (userId != null && !ownedBy(e.getKey(), userId)) continue;
+            if (total++ < skip || (size > 0 && items.size() >= size)) continue;
+            items.add(summary(e.getKey(), e.getValue()));
+        }
+        return new Page(items, total);
+    }
+
+    public int size() {
+        return view.size();
+    }
+
+    private boolean ownedBy(String deviceId, long userId) {
+        ThresholdTable.Ref ref = thresholds.get(deviceIds.parse(deviceId));
+        return ref != null && ref.userId() == userId;
+    }
+
+    private DeviceSummaryDto summary(String deviceId, Latest l) {
+        Instant last = lastSeen.get(deviceId);
+        if (last == null) last = l.updatedAtUtc();
+        return new DeviceSummaryDto(deviceId, l.windowStartUtc(), l.windowMinutes(), l.kwh(), l.sampleCount(), last);
+    }
+
+    private void apply(ResultSet rs) throws SQLException {
+        put(rs.getString(1), new Latest(rs.getObject(2, OffsetDateTime.class).toInstant(), rs.getInt(3),
+                rs.getDouble(4), rs.getInt(5), rs.getObject(6, OffsetDateTime.class).toInstant()));
+    }
+
+    private void put(String deviceId, Latest l) {
+        view.merge(deviceId, l, (old, cur) -> cur.windowStartUtc().isBefore(old.windowStartUtc()) ? old : cur);
+    }
+
+    /** Last (newest) window of each device run in the sorted deltas. */
+    private int collect(SealedDeltas merged) {
+        int rows = 0;
+        for (int i = 0; i < merged.size(); i++) {
+            if (i + 1 < merged.size() && merged.deviceId(i + 1) == merged.deviceId(i)) continue;
+            if (rows == rowDevice.length) {
+                rowDevice = Arrays.copyOf(rowDevice, rows << 1);
+                rowWindow = Arrays.copyOf(rowWindow, rows << 1);
+            }
+            rowDevice[rows] = merged.deviceId(i);
+            rowWindow[rows++] = merged.windowIndex(i);
+        }
+        return rows;
+    }
+
+    private static OffsetDateTime utc(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    /** The view must never get ahead of the database. */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
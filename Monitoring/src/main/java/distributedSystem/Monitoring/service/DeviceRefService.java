@@ -4,25 +4,45 @@ package distributedSystem.Monitoring.service;
 import distributedSystem.Monitoring.model.DeviceMonitoringRef;
 import distributedSystem.Monitoring.repository.DeviceMonitoringRefRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class DeviceRefService {
     private final DeviceMonitoringRefRepository deviceMonitoringRefRepository;
+    private final ThresholdTable thresholds;
 
 
 
-    public DeviceRefService(DeviceMonitoringRefRepository deviceMonitoringRef) {
+    public DeviceRefService(DeviceMonitoringRefRepository deviceMonitoringRef, ThresholdTable thresholds) {
         this.deviceMonitoringRefRepository = deviceMonitoringRef;
+        this.thresholds = thresholds;
     }
 
     public void handleDeviceCreated(Long deviceId,Long userId,int maximConsumptionValue) {
-        deviceMonitoringRefRepository.findById(deviceId).orElseGet(() -> deviceMonitoringRefRepository.save(DeviceMonitoringRef.builder().device_id(deviceId).userId(userId).maximConsumptionValue(maximConsumptionValue).build()));
+        DeviceMonitoringRef ref = deviceMonitoringRefRepository.findById(deviceId).orElseGet(() -> deviceMonitoringRefRepository.save(DeviceMonitoringRef.builder().device_id(deviceId).userId(userId).maximConsumptionValue(maximConsumptionValue).build()));
+        afterCommit(() -> thresholds.put(ref));
     }
 
     public void handleDeviceDeleted(Long deviceId,Long userId,int maximConsumptionValue)
     {
         deviceMonitoringRefRepository.findById(deviceId)
                 .ifPresent(deviceMonitoringRefRepository::delete);
+        afterCommit(() -> thresholds.remove(deviceId));
+    }
+
+    /** The in-memory table must never get ahead of the database, so apply changes once the row is committed. */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
 
@@ -0,0 +1,50 @@
+// src/main/java/distributedSystem/Monitoring/service/FlushCadence.java
+package distributedSystem.Monitoring.service;
+
+/**
+ * Interval between window flushes. The base is app.flush-seconds; dirty-bucket pressure may pull a
+ * flush forward, but never closer to the previous one than {@link #floorMillis()}: the minimum
+ * interval, stretched while the database is slow so the flush writer is busy at most half the time.
+ * Slow writes therefore turn into fewer, larger flushes instead of a queue of small ones.
+ */
+final class FlushCadence {
+
+    /** Share of wall time the single flush writer may spend in transactions. */
+    static final double WRITER_SHARE = 0.5;
+
+    private static final double EWMA_WEIGHT = 0.3;
+
+    private final long baseMillis;
+    private final long minMillis;
+    private final long maxMillis;
+
+    // written by the flush writer only
+    private volatile double writeMillis;
+
+    FlushCadence(long baseMillis, long minMillis, long maxMillis) {
+        this.minMillis = Math.max(1, minMillis);
+        this.maxMillis = Math.max(this.minMillis, maxMillis);
+        this.baseMillis = Math.min(Math.max(baseMillis, this.minMillis), this.maxMillis);
+    }
+
+    /** Flush writer: duration of one write transaction, successful or not. */
+    void recordWrite(long millis) {
+        double prev = writeMillis;
+        writeMillis = prev == 0 ? millis : prev + EWMA_WEIGHT * (millis - prev);
+    }
+
+    /** Smoothed write duration. */
+    double writeMillis() {
+        return writeMillis;
+    }
+
+    /** Earliest a flush may follow the previous one. */
+    long floorMillis() {
+        return Math.min(maxMillis, Math.max(minMillis, (long) (writeMillis / WRITER_SHARE)));
+    }
+
+    /** Delay of the next regular flush. */
+    long nextMillis() {
+        return Math.max(baseMillis, floorMillis());
+    }
+}
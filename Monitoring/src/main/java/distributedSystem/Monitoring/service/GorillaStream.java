@@ -0,0 +1,214 @@
+// src/main/java/distributedSystem/Monitoring/service/GorillaStream.java
+package distributedSystem.Monitoring.service;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only compressed series of (window index, kWh) points, Gorilla style: timestamps as
+ * delta-of-delta (a steady one-window cadence costs one bit), values as the XOR with the previous
+ * value (an unchanged value costs one bit, otherwise only the meaningful bits are stored).
+ * Bits are packed MSB first into longs, so a stream can be read straight from a mapped segment.
+ * Not thread-safe.
+ */
+final class GorillaStream {
+
+    private long[] words;
+    private int bitLength;
+    private int count;
+
+    // encoder state, the same fields the reader tracks
+    private long prevTs;
+    private long prevDelta;
+    private long prevBits;
+    private int prevLeading = -1;
+    private int prevTrailing;
+
+    GorillaStream() {
+        this.words = new long[8];
+    }
+
+    /** Continues a stream read back from disk; decodes it once to restore the encoder state. */
+    static GorillaStream resume(long[] words, int bitLength, int count) {
+        GorillaStream s = new GorillaStream();
+        s.words = words.length == 0 ? new long[8] : words;
+        s.bitLength = bitLength;
+        s.count = count;
+        Reader r = new Reader(LongBuffer.wrap(s.words), count);
+        while (r.next()) { /* replay */ }
+        s.prevTs = r.ts;
+        s.prevDelta = r.delta;
+        s.prevBits = r.bits;
+        s.prevLeading = r.leading;
+        s.prevTrailing = r.trailing;
+        return s;
+    }
+
+    int count() { return count; }
+    int bitLength() { return bitLength; }
+    long lastTs() { return prevTs; }
+
+    /** Backing words; only the first {@code ceil(bitLength / 64)} are meaningful. */
+    long[] words() { return words; }
+
+    int wordLength() { return (bitLength + 63) >>> 6; }
+
+    Reader reader() {
+        return new Reader(LongBuffer.wrap(words), count);
+    }
+
+    /** Appends a point; {@code ts} must be greater than the previous one. */
+    void append(long ts, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(ts, 64);
+            writeBits(bits, 64);
+            prevTs = ts;
+            prevBits = bits;
+            count = 1;
+            return;
+        }
+
+        long delta = ts - prevTs;
+        long dod = delta - prevDelta;
+        if (dod == 0) {
+            writeBits(0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            writeBits(0b10, 2);
+            writeBits(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            writeBits(0b110, 3);
+            writeBits(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(dod, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+
+        long xor = bits ^ prevBits;
+        if (xor == 0) {
+            writeBits(0, 1);
+        } else {
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                // fits in the previous meaningful-bit block
+                writeBits(0b10, 2);
+                writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(significant - 1, 6);
+                writeBits(xor >>> trailing, significant);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        prevTs = ts;
+        prevDelta = delta;
+        prevBits = bits;
+        count++;
+    }
+
+    private void writeBits(long v, int n) {
+        int needed = (bitLength + n + 63) >>> 6;
+        if (needed > words.length) words = Arrays.copyOf(words, Math.max(needed, words.length << 1));
+
+        int idx = bitLength >>> 6;
+        int free = 64 - (bitLength & 63);
+        if (n <= free) {
+            words[idx] |= (v & mask(n)) << (free - n);
+        } else {
+            int rest = n - free;
+            words[idx] |= (v >>> rest) & mask(free);
+            words[idx + 1] |= (v & mask(rest)) << (64 - rest);
+        }
+        bitLength += n;
+    }
+
+    private static long mask(int n) {
+        return n == 64 ? -1L : (1L << n) - 1;
+    }
+
+    /** Sequential decoder over heap words or a slice of a mapped segment. */
+    static final class Reader {
+
+        private final LongBuffer words;
+        private final int count;
+        private int read;
+        private int pos;
+
+        private long ts;
+        private long delta;
+        private long bits;
+        private int leading = -1;
+        private int trailing;
+
+        Reader(LongBuffer words, int count) {
+            this.words = words;
+            this.count = count;
+        }
+
+        boolean next() {
+            if (read == count) return false;
+            if (read++ == 0) {
+                ts = readBits(64);
+                bits = readBits(64);
+                return true;
+            }
+
+            long dod;
+            if (readBits(1) == 0) {
+                dod = 0;
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(7), 7);
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(9), 9);
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(12), 12);
+            } else {
+                dod = readBits(64);
+            }
+            delta += dod;
+            ts += delta;
+
+            if (readBits(1) == 1) {
+                if (readBits(1) == 0) {
+                    bits ^= readBits(64 - leading - trailing) << trailing;
+                } else {
+                    leading = (int) readBits(5);
+                    int significant = (int) readBits(6) + 1;
+                    trailing = 64 - leading - significant;
+                    bits ^= readBits(significant) << trailing;
+                }
+            }
+            return true;
+        }
+
+        long ts() { return ts; }
+
+        double value() { return Double.longBitsToDouble(bits); }
+
+        private long readBits(int n) {
+            int idx = pos >>> 6;
+            int free = 64 - (pos & 63);
+            long r;
+            if (n <= free) {
+                r = (words.get(idx) >>> (free - n)) & mask(n);
+            } else {
+                int rest = n - free;
+                r = ((words.get(idx) & mask(free)) << rest) | (words.get(idx + 1) >>> (64 - rest));
+            }
+            pos += n;
+            return r;
+        }
+
+        private static long signed(long v, int n) {
+            return (v << (64 - n)) >> (64 - n);
+        }
+    }
+}
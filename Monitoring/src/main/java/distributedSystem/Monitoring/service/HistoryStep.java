@@ -0,0 +1,60 @@
+// src/main/java/distributedSystem/Monitoring/service/HistoryStep.java
+package distributedSystem.Monitoring.service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Step of a history query: a number plus a unit, e.g. "15m", "1h", "1d", "7d", "1mo".
+ * Month steps are calendar months (UTC), everything else a fixed duration.
+ */
+public record HistoryStep(long amount, String unit) {
+
+    private static final Pattern FORMAT = Pattern.compile("(\\d+)\\s*(mo|m|h|d)");
+
+    public static HistoryStep parse(String text) {
+        Matcher m = FORMAT.matcher(text == null ? "" : text.trim().toLowerCase());
+        if (!m.matches() || Long.parseLong(m.group(1)) <= 0) {
+            throw new IllegalArgumentException("Invalid step: " + text + " (expected e.g. 15m, 1h, 1d, 1mo)");
+        }
+        return new HistoryStep(Long.parseLong(m.group(1)), m.group(2));
+    }
+
+    public boolean isMonths() {
+        return unit.equals("mo");
+    }
+
+    /** Fixed step length; not defined for month steps. */
+    public long millis() {
+        return switch (unit) {
+            case "m" -> amount * 60_000L;
+            case "h" -> amount * 3_600_000L;
+            case "d" -> amount * 86_400_000L;
+            default -> throw new IllegalStateException("Month steps have no fixed length");
+        };
+    }
+
+    /** Index of the step bucket (counted from {@code from}) that {@code t} falls into. */
+    public long indexOf(Instant from, Instant t) {
+        if (!isMonths()) return Math.floorDiv(t.toEpochMilli() - from.toEpochMilli(), millis());
+        long months = ChronoUnit.MONTHS.between(from.atOffset(ZoneOffset.UTC), t.atOffset(ZoneOffset.UTC));
+        long index = Math.floorDiv(months, amount);
+        // plusMonths clamps to the month's last day (Jan 31 + 1 month = Feb 28); stay consistent with start()
+        while (!start(from, index + 1).isAfter(t)) index++;
+        return index;
+    }
+
+    /** Start of step bucket {@code index}. */
+    public Instant start(Instant from, long index) {
+        if (!isMonths()) return from.plusMillis(index * millis());
+        return from.atOffset(ZoneOffset.UTC).plusMonths(index * amount).toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return amount + unit;
+    }
+}
@@ -0,0 +1,84 @@
+// src/main/java/distributedSystem/Monitoring/service/IngestOffsetStore.java
+package distributedSystem.Monitoring.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes ingest_offset. Saves join the flush transaction, so the stored offset always
+ * matches the deltas in window_consumption: after a crash the consumer resumes exactly after the
+ * last record whose delta was committed.
+ */
+@Component
+public class IngestOffsetStore {
+
+    private static final String UPSERT = """
+            INSERT INTO ingest_offset (consumer_group, topic, partition_id, next_offset, updated_at_utc)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (consumer_group, topic, partition_id)
+            DO UPDATE SET
+              next_offset = GREATEST(ingest_offset.next_offset, EXCLUDED.next_offset),
+              updated_at_utc = EXCLUDED.updated_at_utc
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final String consumerGroup;
+    private final String topic;
+
+    public IngestOffsetStore(
+            JdbcTemplate jdbc,
+            @Value("${spring.kafka.consumer.group-id}") String consumerGroup,
+            @Value("${app.device-topic}") String topic
+    ) {
+        this.jdbc = jdbc;
+        this.consumerGroup = consumerGroup;
+        this.topic = topic;
+    }
+
+    /** Stores the highest next-offset per partition found in {@code batches}. Call inside the flush transaction. */
+    public void save(Collection<SealedDeltas> batches, Instant nowUtc) {
+        Map<Integer, Long> next = new HashMap<>();
+        for (SealedDeltas b : batches) {
+            if (b.nextOffset() >= 0) next.merge(b.partition(), b.nextOffset(), Math::max);
+        }
+        if (next.isEmpty()) return;
+
+        Timestamp now = Timestamp.from(nowUtc);
+        List<Object[]> rows = new ArrayList<>(next.size());
+        next.forEach((p, o) -> rows.add(new Object[]{consumerGroup, topic, p, o, now}));
+        jdbc.batchUpdate(UPSERT, rows);
+    }
+
+    /** Next offset to consume for each of {@code partitions} that has a stored position. */
+    public Map<Integer, Long> load(Collection<Integer> partitions) {
+        Map<Integer, Long> out = new HashMap<>();
+        if (partitions.isEmpty()) return out;
+        jdbc.query("""
+                        SELECT partition_id, next_offset
+                          FROM ingest_offset
+                         WHERE consumer_group = ? AND topic = ? AND partition_id = ANY (?)
+                        """,
+                ps -> {
+                    ps.setString(1, consumerGroup);
+                    ps.setString(2, topic);
+                    ps.setArray(3, ps.getConnection().createArrayOf("integer", partitions.toArray()));
+                },
+                rs -> {
+                    out.put(rs.getInt(1), rs.getLong(2));
+                });
+        return out;
+    }
+
+    public String topic() {
+        return topic;
+    }
+}
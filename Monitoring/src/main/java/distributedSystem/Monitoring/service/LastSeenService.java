@@ -7,22 +7,37 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class LastSeenService {
-    private final Map<String, Instant> lastSeen = new ConcurrentHashMap<>();
+    // epoch millis per device; the holder is reused so marking does not allocate
+    // keyed by the canonical (cached) device name, so "device-1" and "device-001" share a slot
+    private final Map<String, AtomicLong> lastSeen = new ConcurrentHashMap<>();
+    private final DeviceIdCodec deviceIds;
     private final boolean useProcessingTime;
 
-    public LastSeenService(@Value("${app.last-seen.use-processing-time:true}") boolean useProcessingTime) {
+    public LastSeenService(DeviceIdCodec deviceIds,
+                           @Value("${app.last-seen.use-processing-time:true}") boolean useProcessingTime) {
+        this.deviceIds = deviceIds;
         this.useProcessingTime = useProcessingTime;
     }
 
     /** Call this on every consumed reading. */
-    public void mark(String deviceId, Instant eventTimestampUtc) {
-        lastSeen.put(deviceId, useProcessingTime ? Instant.now() : eventTimestampUtc);
+    public void mark(long deviceId, long eventEpochMillis) {
+        if (deviceId < 0) return;
+        long value = useProcessingTime ? System.currentTimeMillis() : eventEpochMillis;
+        String key = deviceIds.format(deviceId);
+        AtomicLong slot = lastSeen.get(key);
+        if (slot == null) {
+            slot = lastSeen.computeIfAbsent(key, k -> new AtomicLong());
+        }
+        slot.lazySet(value);
     }
 
     public Instant get(String deviceId) {
-        return lastSeen.get(deviceId);
+        String key = deviceIds.canonical(deviceId);
+        AtomicLong slot = key == null ? null : lastSeen.get(key);
+        return slot == null ? null : Instant.ofEpochMilli(slot.get());
     }
 }
@@ -0,0 +1,312 @@
+// src/main/java/distributedSystem/Monitoring/service/LiveConsumptionHub.java
+package distributedSystem.Monitoring.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-Sent Events of window updates per device or per user (app.live.*).
+ * <p>
+ * {@link WindowAggregator} offers every applied reading of a watched device from the consumer thread;
+ * {@link #watching} is a lock-free lookup in sorted snapshots, so unwatched devices cost one volatile read.
+ * Updates are coalesced per subscription by (device, window) and sent at most
+ * {@code max-events-per-second} times a second, as one "windows" event holding the window totals and
+ * the deltas since the previous event. Each send gets its own thread from an unqueued pool of up to
+ * {@code sender-threads}: a send either starts at once or is retried on the next tick, so a client stuck
+ * in a blocking write holds one thread and never delays the others' sends. A subscriber whose send has
+ * been running longer than {@code max-send-ms}, or whose backlog exceeds {@code max-pending}, is dropped
+ * (its EventSource reconnects): the ticker only unlists it, and completes the emitter on a closer thread,
+ * because completing waits for the emitter's write lock, which the stuck send holds until the connection ends.
+ */
+@Component
+public class LiveConsumptionHub implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveConsumptionHub.class);
+
+    private static final long KEEPALIVE_MS = 15_000;
+
+    private final ThresholdTable thresholds;
+    private final DeviceIdCodec deviceIds;
+    private final int windowMinutes;
+    private final long minIntervalMs;
+    private final long maxSendMs;
+    private final int maxPending;
+    private final long timeoutMs;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // sorted ids with at least one subscription, rebuilt on (un)subscribe
+    private volatile long[] watchedDevices = new long[0];
+    private volatile long[] watchedUsers = new long[0];
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-dispatch");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService senders;
+    private final ExecutorService closers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+        Thread t = new Thread(r, "live-closer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public LiveConsumptionHub(
+            ThresholdTable thresholds,
+            DeviceIdCodec deviceIds,
+            @Value("${app.aggregate-minutes:60}") int windowMinutes,
+            @Value("${app.live.max-events-per-second:2}") int maxEventsPerSecond,
+            @Value("${app.live.max-send-ms:2000}") long maxSendMs,
+            @Value("${app.live.max-pending:10000}") int maxPending,
+            @Value("${app.live.sender-threads:32}") int senderThreads,
+            @Value("${app.live.timeout-minutes:30}") long timeoutMinutes
+    ) {
+        this.thresholds = thresholds;
+        this.deviceIds = deviceIds;
+        this.windowMinutes = Math.max(1, windowMinutes);
+        this.minIntervalMs = 1000L / Math.max(1, maxEventsPerSecond);
+        this.maxSendMs = Math.max(100, maxSendMs);
+        this.maxPending = Math.max(1, maxPending);
+        this.timeoutMs = Math.max(1, timeoutMinutes) * 60_000L;
+        // no queue: a send waiting behind stuck ones would age towards max-send-ms without having started
+        this.senders = new ThreadPoolExecutor(0, Math.max(1, senderThreads), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "live-sender");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.max(10, Math.min(minIntervalMs, 250));
+        ticker.scheduleWithFixedDelay(this::dispatch, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+        for (Subscription s : subscriptions) s.emitter.complete();
+    }
+
+    // ====== subscriptions (request threads) ======
+
+    public SseEmitter subscribeDevice(String deviceId) {
+        long id = deviceIds.parse(deviceId);
+        if (id == DeviceIdCodec.NO_ID) throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
+        return subscribe(new Subscription(id, false));
+    }
+
+    public SseEmitter subscribeUser(long userId) {
+        return subscribe(new Subscription(userId, true));
+    }
+
+    private SseEmitter subscribe(Subscription s) {
+        s.emitter.onCompletion(() -> remove(s));
+        s.emitter.onTimeout(() -> remove(s));
+        s.emitter.onError(e -> remove(s));
+        subscriptions.add(s);
+        rebuildWatched();
+        return s.emitter;
+    }
+
+    private void remove(Subscription s) {
+        if (subscriptions.remove(s)) rebuildWatched();
+    }
+
+    private synchronized void rebuildWatched() {
+        watchedDevices = subscriptions.stream().filter(s -> !s.user).mapToLong(s -> s.id).sorted().distinct().toArray();
+        watchedUsers = subscriptions.stream().filter(s -> s.user).mapToLong(s -> s.id).sorted().distinct().toArray();
+    }
+
+    // ====== ingest (consumer threads) ======
+
+    /** Cheap pre-check before {@link #offer}: whether anyone listens to this device or its owner. */
+    public boolean watching(long deviceId) {
+        long[] devices = watchedDevices, users = watchedUsers;
+        if (devices.length == 0 && users.length == 0) return false;
+        if (devices.length > 0 && Arrays.binarySearch(devices, deviceId) >= 0) return true;
+        if (users.length == 0) return false;
+        ThresholdTable.Ref ref = thresholds.get(deviceId);
+        return ref != null && Arrays.binarySearch(users, ref.userId()) >= 0;
+    }
+
+    /** A reading was applied: {@code totalKwh} is the window's running total after adding {@code deltaKwh}. */
+    public void offer(long deviceId, long windowStartMillis, double totalKwh, double deltaKwh, int samples) {
+        ThresholdTable.Ref ref = null;
+        for (Subscription s : subscriptions) {
+            boolean match;
+            if (s.user) {
+                if (ref == null) ref = thresholds.get(deviceId);
+                match = ref != null && ref.userId() == s.id;
+            } else {
+                match = s.id == deviceId;
+            }
+            if (match) s.offer(deviceId, windowStartMillis, totalKwh, deltaKwh, samples);
+        }
+    }
+
+    // ====== dispatch (ticker thread) ======
+
+    private void dispatch() {
+        long now = System.currentTimeMillis();
+        for (Subscription s : subscriptions) {
+            try {
+                if (s.inFlight) {
+                    long since = s.sendingSince;
+                    if (since != 0 && now - since > maxSendMs) drop(s, "send blocked for " + (now - since) + " ms");
+                    continue;
+                }
+                if (s.overflowed) {
+                    drop(s, "more than " + maxPending + " pending updates");
+                    continue;
+                }
+                if (now - s.lastSentAt < minIntervalMs) continue;
+                if (s.hasPending() || now - s.lastSentAt >= KEEPALIVE_MS) send(s);
+            } catch (RuntimeException e) {
+                log.warn("Live dispatch failed for a subscription: {}", e.toString());
+            }
+        }
+    }
+
+    /** Takes the pending batch on the sender thread, so a rejected send loses nothing. */
+    private void send(Subscription s) {
+        s.inFlight = true;
+        try {
+            senders.execute(() -> {
+                s.sendingSince = System.currentTimeMillis();   // the max-send-ms clock starts with the write
+                try {
+                    List<Map<String, Object>> batch = s.take();
+                    s.emitter.send(batch != null
+                            ? SseEmitter.event().name("windows").data(batch, MediaType.APPLICATION_JSON)
+                            : SseEmitter.event().comment("keepalive"));
+                    eventsSent.increment();
+                    s.lastSentAt = System.currentTimeMillis();
+                } catch (IOException | IllegalStateException e) {
+                    remove(s);   // client went away
+                } finally {
+                    s.sendingSince = 0;
+                    s.inFlight = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            s.inFlight = false;   // every sender busy: retried on the next tick
+        }
+    }
+
+    /** Unlists the subscriber here; completing the emitter may wait on its stuck send, so a closer does it. */
+    private void drop(Subscription s, String reason) {
+        dropped.increment();
+        remove(s);
+        closers.execute(() -> s.emitter.completeWithError(new IOException("slow subscriber dropped: " + reason)));
+        log.debug("Dropped live subscriber ({} {}): {}", s.user ? "user" : "device", s.id, reason);
+    }
+
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    public int subscriptions() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("monitoring.live.subscriptions", this, LiveConsumptionHub::subscriptions)
+                .description("Open live consumption streams")
+                .register(registry);
+        FunctionCounter.builder("monitoring.live.events", eventsSent, LongAdder::sum)
+                .description("Live events (window batches and keepalives) sent")
+                .register(registry);
+        FunctionCounter.builder("monitoring.live.dropped", dropped, LongAdder::sum)
+                .description("Live subscribers dropped for being too slow")
+                .register(registry);
+    }
+
+    /** One open stream; pending updates are guarded by the instance lock. */
+    private final class Subscription {
+        final long id;
+        final boolean user;
+        final SseEmitter emitter = newEmitter(timeoutMs);
+
+        private final Map<WindowKey, Update> pending = new LinkedHashMap<>();
+        volatile boolean overflowed;
+        volatile boolean inFlight;
+        volatile long sendingSince;
+        volatile long lastSentAt;
+
+        Subscription(long id, boolean user) {
+            this.id = id;
+            this.user = user;
+        }
+
+        synchronized void offer(long deviceId, long windowStartMillis, double totalKwh, double deltaKwh, int samples) {
+            Update u = pending.get(new WindowKey(deviceId, windowStartMillis));
+            if (u == null) {
+                if (pending.size() >= maxPending) {
+                    overflowed = true;
+                    return;
+                }
+                u = new Update();
+                pending.put(new WindowKey(deviceId, windowStartMillis), u);
+            }
+            u.totalKwh = totalKwh;
+            u.deltaKwh += deltaKwh;
+            u.samples += samples;
+        }
+
+        synchronized boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        synchronized List<Map<String, Object>> take() {
+            if (pending.isEmpty()) return null;
+            List<Map<String, Object>> out = new ArrayList<>(pending.size());
+            pending.forEach((k, u) -> out.add(Map.of(
+                    "device_id", deviceIds.format(k.deviceId()),
+                    "window_start_utc", Instant.ofEpochMilli(k.windowStartMillis()).toString(),
+                    "window_minutes", windowMinutes,
+                    "kwh", u.totalKwh,
+                    "delta_kwh", u.deltaKwh,
+                    "samples", u.samples
+            )));
+            pending.clear();
+            return out;
+        }
+    }
+
+    private record WindowKey(long deviceId, long windowStartMillis) {}
+
+    private static final class Update {
+        double totalKwh;
+        double deltaKwh;
+        int samples;
+    }
+}
@@ -0,0 +1,47 @@
+// src/main/java/distributedSystem/Monitoring/service/MultiRowUpsert.java
+package distributedSystem.Monitoring.service;
+
+/**
+ * SQL text for {@code INSERT ... VALUES (...), (...) ON CONFLICT ...} with a given number of rows.
+ * The statement for a full chunk is built once; only a flush's last, shorter chunk builds a new one.
+ */
+final class MultiRowUpsert {
+
+    /** Postgres caps a statement at 65535 bind parameters. */
+    private static final int MAX_PARAMS = 65_535;
+
+    private final String head;
+    private final String tail;
+    private final String rowPlaceholders;
+    private final int chunkSize;
+    private final String fullChunkSql;
+
+    /**
+     * @param head   {@code INSERT INTO t (cols) VALUES}
+     * @param tail   {@code ON CONFLICT ... DO UPDATE ...}
+     */
+    MultiRowUpsert(String head, int columns, String tail, int chunkSize) {
+        this.head = head;
+        this.tail = tail;
+        this.rowPlaceholders = "(" + "?, ".repeat(columns - 1) + "?)";
+        this.chunkSize = Math.min(MAX_PARAMS / columns, Math.max(1, chunkSize));
+        this.fullChunkSql = sql(this.chunkSize);
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    String sqlFor(int rows) {
+        return rows == chunkSize ? fullChunkSql : sql(rows);
+    }
+
+    private String sql(int rows) {
+        StringBuilder sb = new StringBuilder(head.length() + tail.length() + rows * (rowPlaceholders.length() + 4));
+        sb.append(head);
+        for (int i = 0; i < rows; i++) {
+            sb.append(i == 0 ? "\n  " : ",\n  ").append(rowPlaceholders);
+        }
+        return sb.append('\n').append(tail).toString();
+    }
+}
@@ -0,0 +1,121 @@
+// src/main/java/distributedSystem/Monitoring/service/ObjectBucketStore.java
+package distributedSystem.Monitoring.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Original layout: one {@link Key} and one {@link Bucket} object per (device, window) in a map.
+ * Buckets with a pending delta are kept in a dirty list, so a drain costs O(dirty buckets).
+ * Not thread-safe: each instance belongs to one {@link AggregatorShard} and its owner thread.
+ */
+public class ObjectBucketStore implements BucketStore {
+
+    /** Keyed by numeric device id to avoid "device-1" vs "device-001" splitting buckets. */
+    record Key(long deviceId, long windowIndex) {}
+
+    /**
+     * Keeps window totals (for alerting) and deltas (for periodic DB flush).
+     * One Bucket represents one (device, windowStart) pair.
+     */
+    static final class Bucket {
+        final Key key;
+
+        // running totals for the current window (used for alert decision)
+        double totalKwh;
+        int totalSamples;
+
+        // delta accumulated since last flush (used for upsertAdd)
+        double pendingKwh;
+        int pendingSamples;
+
+        // ensures only one alert per window
+        boolean alerted;
+
+        Bucket(Key key) {
+            this.key = key;
+        }
+
+        void add(double v, int samples) {
+            this.totalKwh += v;
+            this.totalSamples += samples;
+            this.pendingKwh += v;
+            this.pendingSamples += samples;
+        }
+    }
+
+    private final Map<Key, Bucket> buf = new HashMap<>();
+    private final List<Bucket> dirty = new ArrayList<>();
+
+    @Override
+    public double add(long deviceId, long windowIndex, double kwh, int samples) {
+        Bucket b = buf.computeIfAbsent(new Key(deviceId, windowIndex), Bucket::new);
+        if (b.pendingSamples == 0) dirty.add(b);
+        b.add(kwh, samples);
+        return b.alerted ? ALERTED : b.totalKwh;
+    }
+
+    @Override
+    public double total(long deviceId, long windowIndex) {
+        Bucket b = buf.get(new Key(deviceId, windowIndex));
+        return b == null ? 0.0 : b.totalKwh;
+    }
+
+    @Override
+    public boolean markAlerted(long deviceId, long windowIndex) {
+        Bucket b = buf.get(new Key(deviceId, windowIndex));
+        if (b == null || b.alerted) return false;
+        b.alerted = true;
+        return true;
+    }
+
+    @Override
+    public int drainPending(DeltaSink sink) {
+        int drained = 0;
+        for (Bucket b : dirty) {
+            if (b.pendingSamples > 0) {
+                sink.accept(b.key.deviceId(), b.key.windowIndex(), b.pendingKwh, b.pendingSamples);
+                b.pendingKwh = 0.0;
+                b.pendingSamples = 0;
+                drained++;
+            }
+        }
+        dirty.clear();
+        return drained;
+    }
+
+    @Override
+    public int evictBefore(long windowIndex) {
+        int before = buf.size();
+        buf.keySet().removeIf(key -> key.windowIndex() < windowIndex);
+        dirty.removeIf(b -> b.key.windowIndex() < windowIndex);
+        return before - buf.size();
+    }
+
+    @Override
+    public void restore(long deviceId, long windowIndex, double totalKwh, int totalSamples, boolean alerted) {
+        Bucket b = buf.computeIfAbsent(new Key(deviceId, windowIndex), Bucket::new);
+        b.totalKwh += totalKwh;
+        b.totalSamples += totalSamples;
+        b.alerted |= alerted;
+    }
+
+    @Override
+    public void forEachBucket(BucketVisitor visitor) {
+        for (Bucket b : buf.values()) {
+            visitor.accept(b.key.deviceId(), b.key.windowIndex(), b.totalKwh, b.totalSamples, b.alerted);
+        }
+    }
+
+    @Override
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    @Override
+    public int size() {
+        return buf.size();
+    }
+}
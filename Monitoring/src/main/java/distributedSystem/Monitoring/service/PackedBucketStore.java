@@ -0,0 +1,206 @@
+// src/main/java/distributedSystem/Monitoring/service/PackedBucketStore.java
+package distributedSystem.Monitoring.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing (linear probing) table over parallel primitive arrays.
+ * The key packs (deviceId, windowIndex) into one long: device id in the high 31 bits,
+ * window index in the low 32. No object is allocated per reading or per bucket; memory is
+ * ~33 bytes per slot instead of a Key + Bucket + map node per bucket.
+ * Slots with a pending delta are listed in {@code dirty}, so a drain costs O(dirty buckets).
+ * Not thread-safe: each instance belongs to one {@link AggregatorShard} and its owner thread.
+ */
+public class PackedBucketStore implements BucketStore {
+
+    private static final long EMPTY = -1L;           // valid keys are always >= 0
+    static final long MAX_DEVICE_ID = Integer.MAX_VALUE;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private double[] totalKwh;
+    private int[] totalSamples;
+    private double[] pendingKwh;
+    private int[] pendingSamples;
+    private boolean[] alerted;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount;
+
+    private int mask;
+    private int size;
+
+    public PackedBucketStore(int initialCapacity) {
+        allocate(tableSizeFor(Math.max(16, (int) (initialCapacity / MAX_LOAD))));
+    }
+
+    static long pack(long deviceId, long windowIndex) {
+        if (deviceId < 0 || deviceId > MAX_DEVICE_ID) {
+            throw new IllegalArgumentException("Device id out of packable range: " + deviceId);
+        }
+        return (deviceId << 32) | (windowIndex & 0xFFFF_FFFFL);
+    }
+
+    static long deviceOf(long key) {
+        return key >>> 32;
+    }
+
+    static long windowOf(long key) {
+        return key & 0xFFFF_FFFFL;
+    }
+
+    @Override
+    public double add(long deviceId, long windowIndex, double kwh, int samples) {
+        int slot = slotFor(pack(deviceId, windowIndex), true);
+        if (pendingSamples[slot] == 0) markDirty(slot);
+        totalKwh[slot] += kwh;
+        totalSamples[slot] += samples;
+        pendingKwh[slot] += kwh;
+        pendingSamples[slot] += samples;
+        return alerted[slot] ? ALERTED : totalKwh[slot];
+    }
+
+    @Override
+    public double total(long deviceId, long windowIndex) {
+        int slot = slotFor(pack(deviceId, windowIndex), false);
+        return slot < 0 ? 0.0 : totalKwh[slot];
+    }
+
+    @Override
+    public boolean markAlerted(long deviceId, long windowIndex) {
+        int slot = slotFor(pack(deviceId, windowIndex), false);
+        if (slot < 0 || alerted[slot]) return false;
+        alerted[slot] = true;
+        return true;
+    }
+
+    @Override
+    public int drainPending(DeltaSink sink) {
+        int drained = 0;
+        for (int d = 0; d < dirtyCount; d++) {
+            int i = dirty[d];
+            if (pendingSamples[i] > 0) {
+                sink.accept(deviceOf(keys[i]), windowOf(keys[i]), pendingKwh[i], pendingSamples[i]);
+                pendingKwh[i] = 0.0;
+                pendingSamples[i] = 0;
+                drained++;
+            }
+        }
+        dirtyCount = 0;
+        return drained;
+    }
+
+    @Override
+    public int evictBefore(long windowIndex) {
+        int removed = 0;
+        for (long k : keys) {
+            if (k != EMPTY && windowOf(k) < windowIndex) removed++;
+        }
+        if (removed > 0) rehash(keys.length, windowIndex);
+        return removed;
+    }
+
+    @Override
+    public void restore(long deviceId, long windowIndex, double totalKwh, int totalSamples, boolean alerted) {
+        int slot = slotFor(pack(deviceId, windowIndex), true);
+        this.totalKwh[slot] += totalKwh;
+        this.totalSamples[slot] += totalSamples;
+        this.alerted[slot] |= alerted;
+    }
+
+    @Override
+    public void forEachBucket(BucketVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.accept(deviceOf(keys[i]), windowOf(keys[i]), totalKwh[i], totalSamples[i], alerted[i]);
+            }
+        }
+    }
+
+    @Override
+    public int dirtyCount() {
+        return dirtyCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // ====== table internals ======
+
+    private int slotFor(long key, boolean insert) {
+        int i = (int) mix(key) & mask;
+        while (true) {
+            long k = keys[i];
+            if (k == key) return i;
+            if (k == EMPTY) {
+                if (!insert) return -1;
+                if (size + 1 > (int) (keys.length * MAX_LOAD)) {
+                    rehash(keys.length << 1, Long.MIN_VALUE);
+                    return slotFor(key, true);
+                }
+                keys[i] = key;
+                size++;
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** Rebuilds the table at {@code capacity}, keeping only entries with window index >= minWindow. */
+    private void rehash(int capacity, long minWindow) {
+        long[] oldKeys = keys;
+        double[] oldTotal = totalKwh, oldPending = pendingKwh;
+        int[] oldTotalSamples = totalSamples, oldPendingSamples = pendingSamples;
+        boolean[] oldAlerted = alerted;
+
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k == EMPTY || windowOf(k) < minWindow) continue;
+            int i = (int) mix(k) & mask;
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = k;
+            totalKwh[i] = oldTotal[j];
+            totalSamples[i] = oldTotalSamples[j];
+            pendingKwh[i] = oldPending[j];
+            pendingSamples[i] = oldPendingSamples[j];
+            alerted[i] = oldAlerted[j];
+            if (pendingSamples[i] > 0) markDirty(i);
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        totalKwh = new double[capacity];
+        totalSamples = new int[capacity];
+        pendingKwh = new double[capacity];
+        pendingSamples = new int[capacity];
+        alerted = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+        dirtyCount = 0;
+    }
+
+    private void markDirty(int slot) {
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount << 1);
+        dirty[dirtyCount++] = slot;
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(Math.max(2, n) - 1) << 1;
+    }
+
+    /** Murmur3 finalizer, spreads packed keys over the table. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
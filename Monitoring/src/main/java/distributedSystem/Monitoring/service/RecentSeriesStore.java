@@ -0,0 +1,583 @@
+// src/main/java/distributedSystem/Monitoring/service/RecentSeriesStore.java
+package distributedSystem.Monitoring.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Embedded copy of the last app.recent-store.days of window_consumption for the devices this instance
+ * consumes, so day series are read from memory instead of Postgres (app.recent-store.*).
+ * <p>
+ * Fed with the deltas of every committed flush. Windows stay uncompressed until their partition's
+ * event-time horizon has passed them ({@link SealedDeltas#closedBefore}, the lateness-based point where
+ * {@link WindowAggregator} evicts their buckets), then go into a per-device, per-UTC-day
+ * {@link GorillaStream}; once the horizon has passed a UTC day its streams are written to a mapped
+ * {@link SeriesSegment}. Retention counts from the later of the wall clock and that horizon.
+ * Deltas for windows that are already compressed (late readings) are kept as corrections and added on read.
+ * Each partition queues its devices by their oldest uncompressed window, so a flush only visits the devices
+ * it touched and those its horizon has just passed, not every device in the store.
+ * <p>
+ * A series is only answered when the store is known to hold all of it: the device's partition must have
+ * been owned by this instance, without a gap in its offsets, since before the requested range.
+ * Everything else ({@link #read} returns null) falls back to Postgres. A clean shutdown saves the
+ * in-memory part, so a restart at the same offsets keeps serving.
+ */
+@Component
+public class RecentSeriesStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentSeriesStore.class);
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final String STATE_FILE = "state.bin";
+    private static final int STATE_MAGIC = 0x52535331; // "RSS1"
+
+    /** Windows of one series read: start (epoch millis) and kWh, ascending. */
+    public record Series(long[] startMillis, double[] kwh, int size) {}
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int days;
+    private final long windowMs;
+    private final LongSupplier clock;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, DeviceSeries> devices = new HashMap<>();
+    private final TreeMap<Long, SeriesSegment> segments = new TreeMap<>();
+    private final TreeSet<Long> openDays = new TreeSet<>();
+    private final Map<Integer, Coverage> partitions = new HashMap<>();
+    private long claims;
+    // highest event-time horizon (window index) of any partition; write lock
+    private long horizon = Long.MIN_VALUE;
+    // retention day the devices were last swept for; write lock
+    private long sweptDay = Long.MIN_VALUE;
+
+    public RecentSeriesStore(
+            @Value("${app.recent-store.enabled:true}") boolean enabled,
+            @Value("${app.recent-store.dir:./data/series}") String dir,
+            @Value("${app.recent-store.days:7}") int days,
+            @Value("${app.aggregate-minutes:60}") int windowMinutes
+    ) {
+        this(enabled, dir, days, windowMinutes, System::currentTimeMillis);
+    }
+
+    RecentSeriesStore(boolean enabled, String dir, int days, int windowMinutes, LongSupplier clock) {
+        this.clock = clock;
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.days = Math.max(1, days);
+        this.windowMs = Math.max(1, windowMinutes) * 60_000L;
+    }
+
+    /** Maps the segments still in retention and, after a clean shutdown, restores the in-memory part. */
+    @PostConstruct
+    public void load() {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(dir);
+            long oldest = retainedFromDay();
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    Long day = SeriesSegment.epochDayOf(f);
+                    if (day == null) continue;
+                    if (day < oldest) {
+                        Files.deleteIfExists(f);
+                    } else {
+                        segments.put(day, SeriesSegment.open(f));
+                    }
+                }
+            }
+            Path state = dir.resolve(STATE_FILE);
+            if (Files.exists(state)) {
+                readState(state);
+                // only a clean shutdown leaves a usable state; never reuse it after a later crash
+                Files.delete(state);
+            }
+            log.info("Recent series store: {} day segments, {} devices restored", segments.size(), devices.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Recent series store could not load {}, starting empty: {}", dir, e.toString());
+            devices.clear();
+            openDays.clear();
+            partitions.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Runs after {@link WindowAggregator}'s final flush (it depends on this store). */
+    @PreDestroy
+    public void close() {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            writeState(dir.resolve(STATE_FILE));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Recent series store could not save its state: {}", e.toString());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ====== ownership (consumer threads, on rebalance) ======
+
+    /**
+     * The partition is consumed here from {@code position} on. Coverage continues if that is exactly
+     * where the store's data for it ends; otherwise only windows starting after now are known complete.
+     */
+    public void claim(int partition, Long position) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            Coverage c = partitions.computeIfAbsent(partition, p -> new Coverage());
+            boolean continuous = position != null && c.fedOffset >= 0 && c.fedOffset == position && c.coveredFrom > 0;
+            if (!continuous) c.coveredFrom = (Math.floorDiv(clock.getAsLong(), windowMs) + 1) * windowMs;
+            c.claim = ++claims;
+            c.owned = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void release(int partition) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            Coverage c = partitions.get(partition);
+            if (c != null) c.owned = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ====== writes (flush writer thread) ======
+
+    /**
+     * Adds committed deltas. Never throws: on failure coverage is reset, so reads go to Postgres
+     * until the store has caught up again.
+     */
+    public void append(Collection<SealedDeltas> committed) {
+        if (!enabled) return;
+        long now = clock.getAsLong();
+        lock.writeLock().lock();
+        try {
+            for (SealedDeltas b : committed) {
+                Coverage c = partitions.computeIfAbsent(b.partition(), p -> new Coverage());
+                if (b.nextOffset() > c.fedOffset) c.fedOffset = b.nextOffset();
+                if (b.closedBefore() > c.closedBefore) c.closedBefore = b.closedBefore();
+                if (b.closedBefore() > horizon) horizon = b.closedBefore();
+            }
+            long retainFrom = retainedFromDay() * DAY_MS;
+            for (SealedDeltas b : committed) {
+                for (int i = 0; i < b.size(); i++) {
+                    long w = b.windowIndex(i);
+                    if (w * windowMs < retainFrom) continue;
+                    DeviceSeries s = devices.computeIfAbsent(b.deviceId(i), id -> new DeviceSeries());
+                    if (s.partition < 0) s.partition = b.partition();
+                    else if (s.partition != b.partition()) s.mixed = true;   // not keyed by device: never served
+                    if (w > s.lastEncoded) {
+                        s.tail.add(w, b.kwh(i));
+                        enqueue(b.deviceId(i), s);
+                    } else {
+                        s.corrections.add(w, b.kwh(i));
+                    }
+                }
+            }
+            compress();
+            retire();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Recent series store update failed, serving from Postgres until it is covered again: {}", e.toString());
+            long from = (Math.floorDiv(now, windowMs) + 1) * windowMs;
+            for (Coverage c : partitions.values()) c.coveredFrom = from;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Queues the device on its partition by its oldest uncompressed window, unless already queued at or below it. */
+    private void enqueue(long deviceId, DeviceSeries s) {
+        if (s.tail.size == 0 || s.tail.win[0] >= s.queuedAt) return;
+        s.queuedAt = s.tail.win[0];
+        partitions.computeIfAbsent(s.partition, p -> new Coverage()).due.add(new Due(s.queuedAt, deviceId));
+    }
+
+    /**
+     * Moves windows past their partition's horizon into the day streams and writes out closed days.
+     * Only devices queued below the horizon are visited.
+     */
+    private void compress() throws IOException {
+        for (Coverage c : partitions.values()) {
+            while (!c.due.isEmpty() && c.due.peek().window() < c.closedBefore) {
+                Due d = c.due.poll();
+                DeviceSeries s = devices.get(d.deviceId());
+                if (s == null || s.queuedAt != d.window()) continue;   // requeued lower since, or retired
+                s.queuedAt = Long.MAX_VALUE;
+                compress(s, c.closedBefore);
+                enqueue(d.deviceId(), s);
+            }
+        }
+        if (horizon == Long.MIN_VALUE) return;
+        long closedBefore = Math.floorDiv(horizon * windowMs, DAY_MS);
+        while (!openDays.isEmpty() && openDays.first() < closedBefore) {
+            writeSegment(openDays.pollFirst());
+        }
+    }
+
+    private void compress(DeviceSeries s, long closeBefore) {
+        Points t = s.tail;
+        int moved = 0;
+        while (moved < t.size && t.win[moved] < closeBefore) {
+            long w = t.win[moved];
+            long day = Math.floorDiv(w * windowMs, DAY_MS);
+            if (segments.containsKey(day)) {
+                s.corrections.add(w, t.kwh[moved]);   // first window of a device on a day already written
+            } else {
+                s.open.computeIfAbsent(day, d -> new GorillaStream()).append(w, t.kwh[moved]);
+                openDays.add(day);
+            }
+            s.lastEncoded = w;
+            moved++;
+        }
+        t.removeFirst(moved);
+    }
+
+    private void writeSegment(long day) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (Map.Entry<Long, DeviceSeries> e : devices.entrySet()) {
+            if (e.getValue().open.containsKey(day)) ids.add(e.getKey());
+        }
+        ids.sort(null);
+        long[] deviceIds = new long[ids.size()];
+        GorillaStream[] streams = new GorillaStream[ids.size()];
+        long dayStart = day * DAY_MS / windowMs, dayEnd = (day + 1) * DAY_MS / windowMs;
+        for (int i = 0; i < deviceIds.length; i++) {
+            DeviceSeries s = devices.get(ids.get(i));
+            deviceIds[i] = ids.get(i);
+            streams[i] = s.open.remove(day);
+            // fold the day's corrections in now, while the stream can still be rebuilt
+            if (s.corrections.countIn(dayStart, dayEnd) > 0) {
+                Points all = new Points();
+                GorillaStream.Reader r = streams[i].reader();
+                while (r.next()) all.append(r.ts(), r.value());
+                s.corrections.moveRange(dayStart, dayEnd, all);
+                streams[i] = all.encode();
+            }
+        }
+        SeriesSegment seg = SeriesSegment.write(dir, day, deviceIds, streams, deviceIds.length);
+        segments.put(day, seg);
+        log.debug("Wrote series segment {} ({} devices, {} KB)", seg.file(), seg.devices(), seg.bytes() >> 10);
+    }
+
+    /**
+     * Drops segments, corrections and idle devices past retention. Nothing older than retention is added,
+     * so the devices are only swept when the retained range moves on, once a day.
+     */
+    private void retire() throws IOException {
+        long oldestDay = retainedFromDay();
+        if (oldestDay == sweptDay) return;
+        long oldestWindow = oldestDay * DAY_MS / windowMs;
+        openDays.headSet(oldestDay).clear();
+        while (!segments.isEmpty() && segments.firstKey() < oldestDay) {
+            SeriesSegment seg = segments.pollFirstEntry().getValue();
+            Files.deleteIfExists(seg.file());
+        }
+        for (Iterator<DeviceSeries> it = devices.values().iterator(); it.hasNext(); ) {
+            DeviceSeries s = it.next();
+            s.corrections.removeBefore(oldestWindow);
+            s.open.headMap(oldestDay).clear();
+            if (s.lastEncoded < oldestWindow && s.tail.size == 0 && s.corrections.size == 0 && s.open.isEmpty()) {
+                it.remove();
+            }
+        }
+        sweptDay = oldestDay;
+    }
+
+    // ====== reads (any thread) ======
+
+    /**
+     * Windows of {@code deviceId} starting in [fromMillis, toMillis), or null when the store cannot
+     * vouch for the whole range (disabled, device or partition not consumed here, range not covered).
+     */
+    public Series read(long deviceId, long fromMillis, long toMillis) {
+        if (!enabled) return null;
+        lock.readLock().lock();
+        try {
+            DeviceSeries s = devices.get(deviceId);
+            if (s == null || s.mixed) return null;
+            Coverage c = partitions.get(s.partition);
+            if (c == null || !c.owned || c.coveredFrom > fromMillis) return null;
+            if (fromMillis < retainedFromDay() * DAY_MS) return null;
+
+            long fromW = Math.floorDiv(fromMillis + windowMs - 1, windowMs);
+            long toW = Math.floorDiv(toMillis + windowMs - 1, windowMs);
+            Points out = new Points();
+            for (long day = Math.floorDiv(fromMillis, DAY_MS); day <= Math.floorDiv(toMillis - 1, DAY_MS); day++) {
+                SeriesSegment seg = segments.get(day);
+                if (seg != null) copy(seg.reader(deviceId), fromW, toW, out);
+                GorillaStream open = s.open.get(day);
+                if (open != null) copy(open.reader(), fromW, toW, out);
+            }
+            for (int i = 0; i < s.tail.size; i++) {
+                long w = s.tail.win[i];
+                if (w >= fromW && w < toW) out.append(w, s.tail.kwh[i]);
+            }
+            for (int i = 0; i < s.corrections.size; i++) {
+                long w = s.corrections.win[i];
+                if (w >= fromW && w < toW) out.add(w, s.corrections.kwh[i]);
+            }
+
+            long[] starts = new long[out.size];
+            for (int i = 0; i < out.size; i++) starts[i] = out.win[i] * windowMs;
+            return new Series(starts, out.kwh, out.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Token of the current, uninterrupted ownership of {@code deviceId}'s partition, or -1 when its flushed
+     * changes do not all pass through this instance. A new token is issued each time the partition is
+     * claimed again, so changes written elsewhere in between are never mistaken for "none".
+     */
+    public long ownership(long deviceId) {
+        if (!enabled) return -1;
+        lock.readLock().lock();
+        try {
+            DeviceSeries s = devices.get(deviceId);
+            if (s == null || s.mixed) return -1;
+            Coverage c = partitions.get(s.partition);
+            return c != null && c.owned ? c.claim : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void copy(GorillaStream.Reader r, long fromW, long toW, Points out) {
+        if (r == null) return;
+        while (r.next()) {
+            long w = r.ts();
+            if (w >= toW) return;
+            if (w >= fromW) out.append(w, r.value());
+        }
+    }
+
+    private long retainedFromDay() {
+        long now = clock.getAsLong();
+        if (horizon != Long.MIN_VALUE) now = Math.max(now, horizon * windowMs);
+        return Math.floorDiv(now, DAY_MS) - days + 1;
+    }
+
+    // ====== clean-shutdown state ======
+
+    private void writeState(Path file) throws IOException {
+        Path tmp = dir.resolve(STATE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(STATE_MAGIC);
+            out.writeLong(windowMs);
+            out.writeInt(partitions.size());
+            for (Map.Entry<Integer, Coverage> e : partitions.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeLong(e.getValue().coveredFrom);
+                out.writeLong(e.getValue().fedOffset);
+            }
+            out.writeInt(devices.size());
+            for (Map.Entry<Long, DeviceSeries> e : devices.entrySet()) {
+                DeviceSeries s = e.getValue();
+                out.writeLong(e.getKey());
+                out.writeInt(s.partition);
+                out.writeBoolean(s.mixed);
+                out.writeLong(s.lastEncoded);
+                out.writeInt(s.open.size());
+                for (Map.Entry<Long, GorillaStream> o : s.open.entrySet()) {
+                    GorillaStream g = o.getValue();
+                    out.writeLong(o.getKey());
+                    out.writeInt(g.bitLength());
+                    out.writeInt(g.count());
+                    long[] w = g.words();
+                    for (int i = 0, n = g.wordLength(); i < n; i++) out.writeLong(w[i]);
+                }
+                s.tail.writeTo(out);
+                s.corrections.writeTo(out);
+            }
+        }
+        Files.move(tmp, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void readState(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != STATE_MAGIC || in.readLong() != windowMs) {
+                log.info("Recent series state {} is from another version or window size, ignoring it", file);
+                return;
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                Coverage c = new Coverage();
+                int p = in.readInt();
+                c.coveredFrom = in.readLong();
+                c.fedOffset = in.readLong();
+                partitions.put(p, c);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                long id = in.readLong();
+                DeviceSeries s = new DeviceSeries();
+                s.partition = in.readInt();
+                s.mixed = in.readBoolean();
+                s.lastEncoded = in.readLong();
+                for (int k = in.readInt(); k > 0; k--) {
+                    long day = in.readLong();
+                    int bitLength = in.readInt();
+                    int count = in.readInt();
+                    long[] words = new long[(bitLength + 63) >>> 6];
+                    for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+                    s.open.put(day, GorillaStream.resume(words, bitLength, count));
+                    openDays.add(day);
+                }
+                s.tail.readFrom(in);
+                s.corrections.readFrom(in);
+                devices.put(id, s);
+                enqueue(id, s);
+            }
+        }
+    }
+
+    // ====== per-device state ======
+
+    /** A partition's coverage: windows starting at or after {@link #coveredFrom} are complete while owned. */
+    private static final class Coverage {
+        long coveredFrom;
+        long fedOffset = -1;
+        boolean owned;
+        long claim;
+        long closedBefore = Long.MIN_VALUE;
+        /** Devices of this partition with uncompressed windows, oldest window first. */
+        final PriorityQueue<Due> due = new PriorityQueue<>((a, b) -> Long.compare(a.window(), b.window()));
+    }
+
+    /** A device queued for compression once its partition's horizon passes {@code window}. */
+    private record Due(long window, long deviceId) {}
+
+    private static final class DeviceSeries {
+        int partition = -1;
+        boolean mixed;
+        /** Newest window index already in a day stream. */
+        long lastEncoded = Long.MIN_VALUE;
+        /** Window its live entry in the partition's due queue is keyed by, MAX_VALUE if not queued. */
+        long queuedAt = Long.MAX_VALUE;
+        /** Day streams not yet written to a segment (today, and yesterday until it closes). */
+        final TreeMap<Long, GorillaStream> open = new TreeMap<>();
+        /** Windows not compressed yet. */
+        final Points tail = new Points();
+        /** Late deltas for windows that are already compressed. */
+        final Points corrections = new Points();
+    }
+
+    /** Small sorted (window, kWh) list; adding to an existing window sums. */
+    static final class Points {
+        long[] win = new long[4];
+        double[] kwh = new double[4];
+        int size;
+
+        void append(long w, double v) {
+            if (size > 0 && win[size - 1] >= w) {
+                add(w, v);
+                return;
+            }
+            if (size == win.length) grow();
+            win[size] = w;
+            kwh[size++] = v;
+        }
+
+        void add(long w, double v) {
+            int i = Arrays.binarySearch(win, 0, size, w);
+            if (i >= 0) {
+                kwh[i] += v;
+                return;
+            }
+            i = -i - 1;
+            if (size == win.length) grow();
+            System.arraycopy(win, i, win, i + 1, size - i);
+            System.arraycopy(kwh, i, kwh, i + 1, size - i);
+            win[i] = w;
+            kwh[i] = v;
+            size++;
+        }
+
+        void removeFirst(int n) {
+            if (n == 0) return;
+            System.arraycopy(win, n, win, 0, size - n);
+            System.arraycopy(kwh, n, kwh, 0, size - n);
+            size -= n;
+        }
+
+        void removeBefore(long w) {
+            int i = Arrays.binarySearch(win, 0, size, w);
+            removeFirst(i >= 0 ? i : -i - 1);
+        }
+
+        int countIn(long fromW, long toW) {
+            int n = 0;
+            for (int i = 0; i < size; i++) if (win[i] >= fromW && win[i] < toW) n++;
+            return n;
+        }
+
+        /** Adds this list's windows in [fromW, toW) to {@code target} and removes them here. */
+        void moveRange(long fromW, long toW, Points target) {
+            int out = 0;
+            for (int i = 0; i < size; i++) {
+                if (win[i] >= fromW && win[i] < toW) {
+                    target.add(win[i], kwh[i]);
+                } else {
+                    win[out] = win[i];
+                    kwh[out++] = kwh[i];
+                }
+            }
+            size = out;
+        }
+
+        GorillaStream encode() {
+            GorillaStream g = new GorillaStream();
+            for (int i = 0; i < size; i++) g.append(win[i], kwh[i]);
+            return g;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(win[i]);
+                out.writeDouble(kwh[i]);
+            }
+        }
+
+        void readFrom(DataInputStream in) throws IOException {
+            for (int n = in.readInt(); n > 0; n--) append(in.readLong(), in.readDouble());
+        }
+
+        private void grow() {
+            win = Arrays.copyOf(win, win.length << 1);
+            kwh = Arrays.copyOf(kwh, kwh.length << 1);
+        }
+    }
+}
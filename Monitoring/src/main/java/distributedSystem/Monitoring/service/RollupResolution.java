@@ -0,0 +1,55 @@
+// src/main/java/distributedSystem/Monitoring/service/RollupResolution.java
+package distributedSystem.Monitoring.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Resolutions consumption history can be read at, finest first. Buckets are UTC-aligned;
+ * RAW is window_consumption itself (app.aggregate-minutes windows).
+ */
+public enum RollupResolution {
+    RAW(null),
+    HOUR("consumption_hourly"),
+    DAY("consumption_daily"),
+    MONTH("consumption_monthly");
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long DAY_MS = 86_400_000L;
+
+    private final String table;
+
+    RollupResolution(String table) {
+        this.table = table;
+    }
+
+    /** Rollup table name, null for RAW. */
+    public String table() {
+        return table;
+    }
+
+    /** Start of the UTC bucket of this resolution containing {@code epochMillis} (RAW: unchanged). */
+    public long bucketStart(long epochMillis) {
+        return switch (this) {
+            case RAW -> epochMillis;
+            case HOUR -> Math.floorDiv(epochMillis, HOUR_MS) * HOUR_MS;
+            case DAY -> Math.floorDiv(epochMillis, DAY_MS) * DAY_MS;
+            case MONTH -> LocalDate.ofEpochDay(Math.floorDiv(epochMillis, DAY_MS)).withDayOfMonth(1).toEpochDay() * DAY_MS;
+        };
+    }
+
+    public boolean isAligned(Instant t) {
+        long ms = t.toEpochMilli();
+        return bucketStart(ms) == ms;
+    }
+
+    /** True if a step of {@code step} can be assembled from whole buckets of this resolution. */
+    public boolean divides(HistoryStep step) {
+        return switch (this) {
+            case RAW -> true;
+            case HOUR -> step.isMonths() || step.millis() % HOUR_MS == 0;
+            case DAY -> step.isMonths() || step.millis() % DAY_MS == 0;
+            case MONTH -> step.isMonths();
+        };
+    }
+}
@@ -0,0 +1,193 @@
+// src/main/java/distributedSystem/Monitoring/service/RollupWriter.java
+package distributedSystem.Monitoring.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps consumption_hourly / _daily / _monthly current from the deltas of each flush, in the flush
+ * transaction: the merged deltas are sorted by (device, window), so one pass per resolution sums
+ * consecutive windows into their UTC bucket and upserts the sums. No batch re-scan of raw rows.
+ * A window belongs to the bucket containing its start.
+ * <p>
+ * Flushes only add what they write, so at startup each rollup not yet marked in rollup_backfill is
+ * rebuilt once from window_consumption, holding locks on the rollups so no flush of another instance
+ * interleaves. Until that has succeeded {@link #ready()} is false and reads stay on the raw windows.
+ * Starting with rollups disabled clears the marks, since flushes in between do not feed them.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class RollupWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupWriter.class);
+
+    private static final RollupResolution[] ROLLUPS = {RollupResolution.HOUR, RollupResolution.DAY, RollupResolution.MONTH};
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final DeviceIdCodec deviceIds;
+    private final boolean enabled;
+    private volatile boolean backfilled;
+    private final Map<RollupResolution, MultiRowUpsert> upserts = new EnumMap<>(RollupResolution.class);
+
+    // flush writer thread only: rows of the resolution being written
+    private long[] rowDevice = new long[256];
+    private long[] rowStart = new long[256];
+    private double[] rowKwh = new double[256];
+    private int[] rowSamples = new int[256];
+    private int rows;
+
+    public RollupWriter(
+            JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            DeviceIdCodec deviceIds,
+            @Value("${app.rollups.enabled:true}") boolean enabled,
+            @Value("${app.flush.chunk-size:1000}") int chunkSize
+    ) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.deviceIds = deviceIds;
+        this.enabled = enabled;
+        for (RollupResolution r : ROLLUPS) {
+            String t = r.table();
+            upserts.put(r, new MultiRowUpsert(
+                    "INSERT INTO " + t + " (device_id, bucket_start_utc, kwh, sample_count, updated_at_utc) VALUES",
+                    5,
+                    """
+                    ON CONFLICT (device_id, bucket_start_utc)
+                    DO UPDATE SET
+                      kwh = %1$s.kwh + EXCLUDED.kwh,
+                      sample_count = %1$s.sample_count + EXCLUDED.sample_count,
+                      updated_at_utc = EXCLUDED.updated_at_utc
+                    """.formatted(t),
+                    chunkSize));
+        }
+    }
+
+    @PostConstruct
+    public void backfill() {
+        try {
+            if (!enabled) {
+                jdbc.update("DELETE FROM rollup_backfill");
+                return;
+            }
+            tx.executeWithoutResult(status -> {
+                // blocks flushes (they write the rollups in their transaction) until the rebuild commits
+                jdbc.execute("LOCK TABLE consumption_hourly, consumption_daily, consumption_monthly IN EXCLUSIVE MODE");
+                Set<String> done = new HashSet<>(jdbc.queryForList("SELECT table_name FROM rollup_backfill", String.class));
+                for (RollupResolution r : ROLLUPS) {
+                    if (done.contains(r.table())) continue;
+                    jdbc.update("DELETE FROM " + r.table());
+                    int n = jdbc.update("""
+                            INSERT INTO %1$s (device_id, bucket_start_utc, kwh, sample_count, updated_at_utc)
+                            SELECT device_id, date_trunc('%2$s', window_start_utc, 'UTC'), sum(kwh), sum(sample_count), now()
+                              FROM window_consumption
+                             GROUP BY 1, 2
+                            """.formatted(r.table(), truncUnit(r)));
+                    jdbc.update("INSERT INTO rollup_backfill (table_name, completed_at_utc) VALUES (?, now())", r.table());
+                    log.info("Backfilled {} with {} buckets from window_consumption", r.table(), n);
+                }
+            });
+            markBackfilled();
+        } catch (RuntimeException e) {
+            log.warn("Rollup backfill failed, history is read from window_consumption: {}", e.toString());
+        }
+    }
+
+    /** Whether the rollups hold the whole history, so reads may use them. */
+    public boolean ready() {
+        return enabled && backfilled;
+    }
+
+    void markBackfilled() {
+        backfilled = true;
+    }
+
+    private static String truncUnit(RollupResolution r) {
+        return switch (r) {
+            case HOUR -> "hour";
+            case DAY -> "day";
+            case MONTH -> "month";
+            case RAW -> throw new IllegalArgumentException("RAW has no rollup");
+        };
+    }
+
+    /** Adds {@code merged} (sorted, one row per device/window) to every rollup. Returns rows upserted. */
+    public int write(SealedDeltas merged, long windowSizeMillis, Instant nowUtc) {
+        if (!enabled || merged.size() == 0) return 0;
+        OffsetDateTime now = OffsetDateTime.ofInstant(nowUtc, ZoneOffset.UTC);
+        int written = 0;
+        for (RollupResolution r : ROLLUPS) {
+            collect(merged, windowSizeMillis, r);
+            written += upsert(upserts.get(r), now);
+        }
+        return written;
+    }
+
+    private void collect(SealedDeltas d, long windowSizeMillis, RollupResolution r) {
+        rows = 0;
+        long lastWindowStart = Long.MIN_VALUE, lastBucket = 0;
+        for (int i = 0; i < d.size(); i++) {
+            long windowStart = d.windowIndex(i) * windowSizeMillis;
+            // windows of one device arrive in order, so the bucket only needs recomputing when the window changes
+            if (windowStart != lastWindowStart) {
+                lastWindowStart = windowStart;
+                lastBucket = r.bucketStart(windowStart);
+            }
+            int last = rows - 1;
+            if (last >= 0 && rowDevice[last] == d.deviceId(i) && rowStart[last] == lastBucket) {
+                rowKwh[last] += d.kwh(i);
+                rowSamples[last] += d.samples(i);
+            } else {
+                if (rows == rowDevice.length) grow();
+                rowDevice[rows] = d.deviceId(i);
+                rowStart[rows] = lastBucket;
+                rowKwh[rows] = d.kwh(i);
+                rowSamples[rows] = d.samples(i);
+                rows++;
+            }
+        }
+    }
+
+    private int upsert(MultiRowUpsert upsert, OffsetDateTime now) {
+        int chunkSize = upsert.chunkSize();
+        for (int from = 0; from < rows; from += chunkSize) {
+            int n = Math.min(chunkSize, rows - from), start = from;
+            jdbc.update(upsert.sqlFor(n), (PreparedStatement ps) -> {
+                int p = 1;
+                for (int i = start; i < start + n; i++) {
+                    ps.setString(p++, deviceIds.format(rowDevice[i]));
+                    ps.setObject(p++, OffsetDateTime.ofInstant(Instant.ofEpochMilli(rowStart[i]), ZoneOffset.UTC));
+                    ps.setDouble(p++, rowKwh[i]);
+                    ps.setLong(p++, rowSamples[i]);
+                    ps.setObject(p++, now);
+                }
+            });
+        }
+        return rows;
+    }
+
+    private void grow() {
+        int cap = rowDevice.length << 1;
+        rowDevice = Arrays.copyOf(rowDevice, cap);
+        rowStart = Arrays.copyOf(rowStart, cap);
+        rowKwh = Arrays.copyOf(rowKwh, cap);
+        rowSamples = Arrays.copyOf(rowSamples, cap);
+    }
+}
@@ -0,0 +1,151 @@
+// src/main/java/distributedSystem/Monitoring/service/SealedDeltas.java
+package distributedSystem.Monitoring.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Pending deltas drained from one shard, in parallel primitive arrays.
+ * Written only by the shard's owner thread before it is published, read only by the flush writer after.
+ * Instances are recycled ({@link #clear()}), so a steady flush cycle allocates nothing.
+ */
+public final class SealedDeltas implements BucketStore.DeltaSink {
+
+    private final int partition;
+    private long[] deviceIds;
+    private long[] windowIndexes;
+    private double[] kwh;
+    private int[] samples;
+    private int size;
+    private long nextOffset = -1;
+    private long closedBefore = Long.MIN_VALUE;
+
+    public SealedDeltas(int partition, int initialCapacity) {
+        this.partition = partition;
+        int cap = Math.max(16, initialCapacity);
+        this.deviceIds = new long[cap];
+        this.windowIndexes = new long[cap];
+        this.kwh = new double[cap];
+        this.samples = new int[cap];
+    }
+
+    @Override
+    public void accept(long deviceId, long windowIndex, double kwh, int samples) {
+        if (size == deviceIds.length) grow();
+        this.deviceIds[size] = deviceId;
+        this.windowIndexes[size] = windowIndex;
+        this.kwh[size] = kwh;
+        this.samples[size] = samples;
+        size++;
+    }
+
+    public int partition() { return partition; }
+    public int size() { return size; }
+    public long deviceId(int i) { return deviceIds[i]; }
+    public long windowIndex(int i) { return windowIndexes[i]; }
+    public double kwh(int i) { return kwh[i]; }
+    public int samples(int i) { return samples[i]; }
+
+    /** Kafka offset after the last record whose delta is included, or -1 if not tracked. */
+    public long nextOffset() { return nextOffset; }
+
+    public void nextOffset(long nextOffset) { this.nextOffset = nextOffset; }
+
+    /** The shard's event-time horizon at the seal: windows before this index take no more deltas. */
+    public long closedBefore() { return closedBefore; }
+
+    public void closedBefore(long closedBefore) { this.closedBefore = closedBefore; }
+
+    public void clear() {
+        size = 0;
+        nextOffset = -1;
+        closedBefore = Long.MIN_VALUE;
+    }
+
+    /**
+     * Replaces the contents with all rows of {@code batches}, sorted by (device, window) with duplicate keys summed.
+     * Sorted keys give every flush the same row-lock order, and a multi-row upsert may not touch a row twice.
+     */
+    public SealedDeltas mergeFrom(Collection<SealedDeltas> batches) {
+        clear();
+        for (SealedDeltas b : batches) {
+            for (int i = 0; i < b.size; i++) accept(b.deviceIds[i], b.windowIndexes[i], b.kwh[i], b.samples[i]);
+        }
+        if (size < 2) return this;
+
+        sort(0, size - 1);
+        int out = 0;
+        for (int i = 1; i < size; i++) {
+            if (deviceIds[i] == deviceIds[out] && windowIndexes[i] == windowIndexes[out]) {
+                kwh[out] += kwh[i];
+                samples[out] += samples[i];
+            } else {
+                move(i, ++out);
+            }
+        }
+        size = out + 1;
+        return this;
+    }
+
+    // ====== in-place sort over the parallel arrays (no boxing) ======
+
+    private void sort(int lo, int hi) {
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                insertionSort(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            long pd = deviceIds[mid], pw = windowIndexes[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compare(i, pd, pw) < 0) i++;
+                while (compare(j, pd, pw) > 0) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            // recurse into the smaller half to bound stack depth
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            } else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private void insertionSort(int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(j, deviceIds[j - 1], windowIndexes[j - 1]) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private int compare(int i, long deviceId, long windowIndex) {
+        int c = Long.compare(deviceIds[i], deviceId);
+        return c != 0 ? c : Long.compare(windowIndexes[i], windowIndex);
+    }
+
+    private void swap(int a, int b) {
+        long d = deviceIds[a]; deviceIds[a] = deviceIds[b]; deviceIds[b] = d;
+        long w = windowIndexes[a]; windowIndexes[a] = windowIndexes[b]; windowIndexes[b] = w;
+        double k = kwh[a]; kwh[a] = kwh[b]; kwh[b] = k;
+        int s = samples[a]; samples[a] = samples[b]; samples[b] = s;
+    }
+
+    private void move(int from, int to) {
+        deviceIds[to] = deviceIds[from];
+        windowIndexes[to] = windowIndexes[from];
+        kwh[to] = kwh[from];
+        samples[to] = samples[from];
+    }
+
+    private void grow() {
+        int cap = deviceIds.length << 1;
+        deviceIds = Arrays.copyOf(deviceIds, cap);
+        windowIndexes = Arrays.copyOf(windowIndexes, cap);
+        kwh = Arrays.copyOf(kwh, cap);
+        samples = Arrays.copyOf(samples, cap);
+    }
+}
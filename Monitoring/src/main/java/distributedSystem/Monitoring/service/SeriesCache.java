@@ -0,0 +1,156 @@
+// src/main/java/distributedSystem/Monitoring/service/SeriesCache.java
+package distributedSystem.Monitoring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized day series keyed by (device, date, tz, virtualHourMinutes, format), LRU-evicted by total size
+ * (app.series-cache.max-mb). Each entry carries a strong ETag (hash of its bytes), so a matching
+ * If-None-Match is answered without touching the database or serializing.
+ * <p>
+ * An entry is valid while {@link SeriesVersions} shows no flushed change for the device-days it spans.
+ * That only sees flushes of this instance, so an entry for a range still open to readings stays valid only
+ * while the device's partition is owned here without interruption ({@link RecentSeriesStore#ownership}).
+ * Ranges of devices consumed elsewhere are cached only once they are closed (ended more than the allowed
+ * lateness plus a window ago) and then kept until evicted.
+ */
+@Component
+public class SeriesCache implements MeterBinder {
+
+    /** Bytes of a series response and its ETag (quoted). */
+    public record Cached(byte[] body, String etag) {}
+
+    private record Key(long deviceId, LocalDate date, ZoneId zone, int virtualHourMinutes, SeriesFormat format) {}
+
+    /** {@code ownership} is -1 for a range that was already closed when cached. */
+    private record Entry(Cached value, long version, long fromMillis, long toMillis, long ownership) {}
+
+    private final WindowAggregator aggregator;
+    private final SeriesVersions versions;
+    private final RecentSeriesStore recentSeries;
+    private final DeviceIdCodec deviceIds;
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final long closedAfterMillis;
+
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SeriesCache(
+            WindowAggregator aggregator,
+            SeriesVersions versions,
+            RecentSeriesStore recentSeries,
+            DeviceIdCodec deviceIds,
+            ObjectMapper objectMapper,
+            @Value("${app.series-cache.max-mb:64}") int maxMb,
+            @Value("${app.aggregate-minutes:60}") int windowMinutes,
+            @Value("${app.window.allowed-lateness-minutes:60}") int allowedLatenessMinutes
+    ) {
+        this.aggregator = aggregator;
+        this.versions = versions;
+        this.recentSeries = recentSeries;
+        this.deviceIds = deviceIds;
+        this.objectMapper = objectMapper;
+        this.maxBytes = Math.max(0, maxMb) * 1024L * 1024L;
+        this.closedAfterMillis = (Math.max(1, windowMinutes) + Math.max(0, allowedLatenessMinutes)) * 60_000L;
+    }
+
+    /** {@link WindowAggregator#readDaySeries} encoded as {@code format}, from the cache when still exact. */
+    public Cached series(String deviceId, String date, String tz, int virtualHourMinutes, SeriesFormat format) {
+        ZoneId zone = ZoneId.of(tz);
+        LocalDate day = (date != null && !date.isBlank()) ? LocalDate.parse(date) : LocalDate.now(zone);
+        long id = deviceIds.parse(deviceId);
+        if (id == DeviceIdCodec.NO_ID) throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
+        Key key = new Key(id, day, zone, virtualHourMinutes, format);
+
+        Entry e;
+        synchronized (this) {
+            e = entries.get(key);
+        }
+        if (e != null && (e.ownership < 0 || e.ownership == recentSeries.ownership(id))
+                && versions.unchangedSince(id, e.fromMillis, e.toMillis, e.version)) {
+            hits.increment();
+            return e.value;
+        }
+        misses.increment();
+
+        long version = versions.current();   // before reading, so a concurrent flush invalidates the entry
+        long ownership = recentSeries.ownership(id);
+        long from = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        Cached value = serialize(aggregator.readDaySeries(deviceId, day.toString(), tz, virtualHourMinutes), format);
+
+        boolean closed = to + closedAfterMillis < System.currentTimeMillis();
+        if ((closed || ownership >= 0) && value.body.length <= maxBytes) {
+            put(key, new Entry(value, version, from, to, closed ? -1 : ownership));
+        }
+        return value;
+    }
+
+    private synchronized void put(Key key, Entry e) {
+        Entry old = entries.put(key, e);
+        if (old != null) bytes -= old.value.body.length;
+        bytes += e.value.body.length;
+        for (Iterator<Entry> it = entries.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+            bytes -= it.next().value.body.length;
+            it.remove();
+        }
+    }
+
+    private Cached serialize(WindowAggregator.DaySeries series, SeriesFormat format) {
+        try {
+            byte[] body = format.encode(series, objectMapper);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return new Cached(body, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not serialize series", e);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("monitoring.series.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Day series served from the series cache")
+                .register(registry);
+        FunctionCounter.builder("monitoring.series.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Day series computed because no valid cache entry existed")
+                .register(registry);
+        Gauge.builder("monitoring.series.cache.size", this, SeriesCache::size)
+                .description("Entries in the series cache")
+                .register(registry);
+        Gauge.builder("monitoring.series.cache.bytes", this, SeriesCache::bytes)
+                .baseUnit("bytes")
+                .description("Serialized bytes held by the series cache")
+                .register(registry);
+    }
+}
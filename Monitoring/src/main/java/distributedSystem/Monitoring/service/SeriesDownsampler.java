@@ -0,0 +1,247 @@
+// src/main/java/distributedSystem/Monitoring/service/SeriesDownsampler.java
+package distributedSystem.Monitoring.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Single-pass visual downsampling of a time-ordered series to at most {@code maxPoints} points.
+ * <p>
+ * Both operators split [from, to) into equal time buckets, so they need neither the point count nor
+ * the whole series up front: points are pushed as the cursor yields them and selected points are
+ * forwarded to the next {@link PointSink} straight away. Every forwarded point is an original one.
+ * <ul>
+ *   <li>{@link Mode#LTTB} (Largest-Triangle-Three-Buckets) keeps the first and last point and, per bucket,
+ *   the point spanning the largest triangle with the previously kept point and the next bucket's average.
+ *   It buffers two buckets.</li>
+ *   <li>{@link Mode#MINMAX} keeps the minimum and maximum of each of {@code maxPoints / 2} buckets, so
+ *   every peak and dip survives. It buffers two points.</li>
+ * </ul>
+ */
+public abstract class SeriesDownsampler {
+
+    /** Receives points in time order. */
+    public interface PointSink {
+        void accept(long tsMillis, double value, long samples) throws IOException;
+    }
+
+    public enum Mode {
+        NONE, LTTB, MINMAX;
+
+        public static Mode parse(String text) {
+            for (Mode m : values()) {
+                if (m.name().equalsIgnoreCase(text == null ? "" : text.trim())) return m;
+            }
+            throw new IllegalArgumentException("Invalid downsample: " + text + " (expected lttb, minmax or none)");
+        }
+    }
+
+    protected final PointSink out;
+    private final long from;
+    private final double bucketMillis;
+    private final int buckets;
+
+    protected SeriesDownsampler(PointSink out, long from, long to, int buckets) {
+        this.out = out;
+        this.from = from;
+        this.buckets = Math.max(1, buckets);
+        this.bucketMillis = (double) Math.max(1, to - from) / this.buckets;
+    }
+
+    /** Operator for {@code mode} in front of {@code out}; NONE forwards every point. */
+    public static SeriesDownsampler of(Mode mode, int maxPoints, long from, long to, PointSink out) {
+        return switch (mode) {
+            case NONE -> new None(out);
+            case LTTB -> new Lttb(out, from, to, maxPoints);
+            case MINMAX -> new MinMax(out, from, to, maxPoints);
+        };
+    }
+
+    /** Next point of the series, in time order. */
+    public abstract void accept(long tsMillis, double value, long samples) throws IOException;
+
+    /** Forwards whatever is still buffered; call once after the last point. */
+    public abstract void finish() throws IOException;
+
+    protected int bucketOf(long tsMillis) {
+        int b = (int) ((tsMillis - from) / bucketMillis);
+        return Math.min(Math.max(b, 0), buckets - 1);
+    }
+
+    /** Growable points of one bucket. */
+    private static final class Points {
+        long[] ts = new long[16];
+        double[] value = new double[16];
+        long[] samples = new long[16];
+        int size;
+        int bucket = -1;
+
+        void add(long t, double v, long s) {
+            if (size == ts.length) {
+                ts = Arrays.copyOf(ts, size << 1);
+                value = Arrays.copyOf(value, size << 1);
+                samples = Arrays.copyOf(samples, size << 1);
+            }
+            ts[size] = t;
+            value[size] = v;
+            samples[size++] = s;
+        }
+
+        double avgTs() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) sum += ts[i];
+            return sum / size;
+        }
+
+        double avgValue() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) sum += value[i];
+            return sum / size;
+        }
+
+        void clear() {
+            size = 0;
+            bucket = -1;
+        }
+    }
+
+    static final class None extends SeriesDownsampler {
+        None(PointSink out) {
+            super(out, 0, 1, 1);
+        }
+
+        @Override
+        public void accept(long tsMillis, double value, long samples) throws IOException {
+            out.accept(tsMillis, value, samples);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    static final class Lttb extends SeriesDownsampler {
+        private Points cur = new Points();
+        private Points next = new Points();
+        private boolean started;
+        private long aTs;
+        private double aValue;
+
+        Lttb(PointSink out, long from, long to, int maxPoints) {
+            super(out, from, to, Math.max(1, maxPoints - 2));   // first and last are kept on top
+        }
+
+        @Override
+        public void accept(long tsMillis, double value, long samples) throws IOException {
+            if (!started) {
+                started = true;
+                keep(tsMillis, value, samples);
+                return;
+            }
+            int b = bucketOf(tsMillis);
+            if (next.size == 0 && (cur.size == 0 || b == cur.bucket)) {
+                cur.bucket = b;
+                cur.add(tsMillis, value, samples);
+                return;
+            }
+            if (next.size > 0 && b != next.bucket) {
+                // next is complete, so cur's third point (next's average) is known
+                select(cur, next.avgTs(), next.avgValue());
+                Points done = cur;
+                cur = next;
+                next = done;
+                next.clear();
+            }
+            next.bucket = b;
+            next.add(tsMillis, value, samples);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            Points tail = next.size > 0 ? next : cur;
+            if (!started || tail.size == 0) return;   // nothing, or a single point already kept
+            int last = --tail.size;
+            long lastTs = tail.ts[last];
+            double lastValue = tail.value[last];
+            long lastSamples = tail.samples[last];
+
+            if (next.size > 0) {
+                select(cur, next.avgTs(), next.avgValue());
+                select(next, lastTs, lastValue);
+            } else {
+                select(cur, lastTs, lastValue);
+            }
+            keep(lastTs, lastValue, lastSamples);
+        }
+
+        /** Keeps the point of {@code bucket} with the largest triangle (previous kept, point, c). */
+        private void select(Points bucket, double cTs, double cValue) throws IOException {
+            if (bucket.size == 0) return;
+            int best = 0;
+            double bestArea = -1;
+            for (int i = 0; i < bucket.size; i++) {
+                double area = Math.abs((aTs - cTs) * (bucket.value[i] - aValue)
+                        - (aTs - bucket.ts[i]) * (cValue - aValue));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            keep(bucket.ts[best], bucket.value[best], bucket.samples[best]);
+        }
+
+        private void keep(long ts, double value, long samples) throws IOException {
+            aTs = ts;
+            aValue = value;
+            out.accept(ts, value, samples);
+        }
+    }
+
+    static final class MinMax extends SeriesDownsampler {
+        private int bucket = -1;
+        private long minTs, maxTs, minSamples, maxSamples;
+        private double min, max;
+
+        MinMax(PointSink out, long from, long to, int maxPoints) {
+            super(out, from, to, Math.max(1, maxPoints / 2));
+        }
+
+        @Override
+        public void accept(long tsMillis, double value, long samples) throws IOException {
+            int b = bucketOf(tsMillis);
+            if (b != bucket) {
+                finish();
+                bucket = b;
+                minTs = maxTs = tsMillis;
+                min = max = value;
+                minSamples = maxSamples = samples;
+                return;
+            }
+            if (value < min) {
+                min = value;
+                minTs = tsMillis;
+                minSamples = samples;
+            }
+            if (value > max) {
+                max = value;
+                maxTs = tsMillis;
+                maxSamples = samples;
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (bucket < 0) return;
+            if (minTs == maxTs) {
+                out.accept(minTs, min, minSamples);
+            } else if (minTs < maxTs) {
+                out.accept(minTs, min, minSamples);
+                out.accept(maxTs, max, maxSamples);
+            } else {
+                out.accept(maxTs, max, maxSamples);
+                out.accept(minTs, min, minSamples);
+            }
+            bucket = -1;
+        }
+    }
+}
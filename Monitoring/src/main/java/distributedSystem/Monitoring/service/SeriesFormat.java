@@ -0,0 +1,121 @@
+// src/main/java/distributedSystem/Monitoring/service/SeriesFormat.java
+package distributedSystem.Monitoring.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Representations of a day series, chosen by the Accept header.
+ * <ul>
+ *   <li>{@link #ROWS} (application/json, the default): one object per window.</li>
+ *   <li>{@link #COLUMNAR_JSON}: {@code {"device_id", "tz", "day_start_utc", "virtual_hour_minutes",
+ *   "base_ms", "step_ms", "t": [...], "kwh": [...]}} where window i starts at {@code base_ms + t[i] * step_ms}.</li>
+ *   <li>{@link #COLUMNAR_BINARY}: the same columns as a little-endian frame: ASCII "SER1", int32 count,
+ *   int64 base_ms, int64 step_ms, int32 t[count], float64 kwh[count].</li>
+ * </ul>
+ * {@code step_ms} is the window size, or a divisor of it if a window is not aligned to the first one.
+ */
+public enum SeriesFormat {
+    ROWS(MediaType.APPLICATION_JSON),
+    COLUMNAR_JSON(MediaType.parseMediaType("application/vnd.monitoring.series.columnar+json")),
+    COLUMNAR_BINARY(MediaType.parseMediaType("application/vnd.monitoring.series.columnar"));
+
+    private static final byte[] MAGIC = {'S', 'E', 'R', '1'};
+
+    private final MediaType mediaType;
+
+    SeriesFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /** Best format the Accept header asks for; ROWS when it names none of ours (or is missing/invalid). */
+    public static SeriesFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) return ROWS;
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);   // quality first, then specificity
+        } catch (IllegalArgumentException e) {
+            return ROWS;
+        }
+        for (MediaType m : accepted) {
+            for (SeriesFormat f : values()) {
+                if (f.mediaType.equalsTypeAndSubtype(m)) return f;
+            }
+        }
+        return ROWS;
+    }
+
+    public byte[] encode(WindowAggregator.DaySeries s, ObjectMapper objectMapper) throws IOException {
+        return switch (this) {
+            case ROWS -> objectMapper.writeValueAsBytes(WindowAggregator.rows(s));
+            case COLUMNAR_JSON -> columnarJson(s, objectMapper);
+            case COLUMNAR_BINARY -> columnarBinary(s);
+        };
+    }
+
+    private static byte[] columnarJson(WindowAggregator.DaySeries s, ObjectMapper objectMapper) throws IOException {
+        long base = base(s), step = step(s, base);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + s.size() * 16);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(bytes)) {
+            json.writeStartObject();
+            json.writeStringField("device_id", s.deviceId());
+            json.writeStringField("tz", s.zone().getId());
+            json.writeStringField("day_start_utc", Instant.ofEpochMilli(s.startMillis()).toString());
+            json.writeNumberField("virtual_hour_minutes", s.virtualHourMinutes());
+            json.writeNumberField("base_ms", base);
+            json.writeNumberField("step_ms", step);
+            json.writeArrayFieldStart("t");
+            for (int i = 0; i < s.size(); i++) json.writeNumber((s.tsMillis()[i] - base) / step);
+            json.writeEndArray();
+            json.writeArrayFieldStart("kwh");
+            for (int i = 0; i < s.size(); i++) json.writeNumber(s.kwh()[i]);
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] columnarBinary(WindowAggregator.DaySeries s) {
+        long base = base(s), step = step(s, base);
+        ByteBuffer buf = ByteBuffer.allocate(MAGIC.length + 4 + 8 + 8 + s.size() * (4 + 8))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC).putInt(s.size()).putLong(base).putLong(step);
+        for (int i = 0; i < s.size(); i++) buf.putInt(Math.toIntExact((s.tsMillis()[i] - base) / step));
+        for (int i = 0; i < s.size(); i++) buf.putDouble(s.kwh()[i]);
+        return buf.array();
+    }
+
+    private static long base(WindowAggregator.DaySeries s) {
+        return s.size() > 0 ? s.tsMillis()[0] : s.startMillis();
+    }
+
+    /** Window size, reduced to the gcd with every offset so all offsets are exact multiples. */
+    private static long step(WindowAggregator.DaySeries s, long base) {
+        long step = Math.max(1, s.windowMillis());
+        for (int i = 1; i < s.size() && step > 1; i++) step = gcd(step, s.tsMillis()[i] - base);
+        return step;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+}
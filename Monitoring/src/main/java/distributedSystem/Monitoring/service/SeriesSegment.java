@@ -0,0 +1,122 @@
+// src/main/java/distributedSystem/Monitoring/service/SeriesSegment.java
+package distributedSystem.Monitoring.service;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One UTC day of {@link GorillaStream}s, one per device, in a memory-mapped file written once:
+ * <pre>
+ *   header  int magic, int version, long epochDay, int devices, int pad
+ *   index   devices x (long deviceId, long wordOffset, int bitLength, int count), sorted by deviceId
+ *   data    the streams' words
+ * </pre>
+ * Reads binary-search the mapped index and decode straight from the mapping, nothing is copied to the heap.
+ */
+final class SeriesSegment {
+
+    private static final int MAGIC = 0x47534547; // "GSEG"
+    private static final int VERSION = 1;
+    private static final int HEADER = 24;
+    private static final int ENTRY = 24;
+
+    private final Path file;
+    private final long epochDay;
+    private final MappedByteBuffer map;
+    private final LongBuffer data;
+    private final int devices;
+
+    private SeriesSegment(Path file, MappedByteBuffer map) throws IOException {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) throw new IOException("not a series segment: " + file);
+        this.file = file;
+        this.map = map;
+        this.epochDay = map.getLong(8);
+        this.devices = map.getInt(16);
+        int dataStart = HEADER + devices * ENTRY;
+        this.data = map.slice(dataStart, map.capacity() - dataStart).asLongBuffer();
+    }
+
+    static Path fileFor(Path dir, long epochDay) {
+        return dir.resolve("seg-" + epochDay + ".ts");
+    }
+
+    /** Epoch day of a segment file name, or null for other files. */
+    static Long epochDayOf(Path file) {
+        String n = file.getFileName().toString();
+        if (!n.startsWith("seg-") || !n.endsWith(".ts")) return null;
+        try {
+            return Long.parseLong(n, 4, n.length() - 3, 10);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static SeriesSegment open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SeriesSegment(file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Writes {@code streams} (parallel to {@code deviceIds}, sorted by device) as the segment of
+     * {@code epochDay} and maps it. Written to a temp file and renamed, so a crash leaves no torn segment.
+     */
+    static SeriesSegment write(Path dir, long epochDay, long[] deviceIds, GorillaStream[] streams, int n) throws IOException {
+        long words = 0;
+        for (int i = 0; i < n; i++) words += streams[i].wordLength();
+        long size = HEADER + (long) n * ENTRY + words * 8;
+
+        Path file = fileFor(dir, epochDay);
+        Path tmp = dir.resolve(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC).putInt(VERSION).putLong(epochDay).putInt(n).putInt(0);
+            long offset = 0;
+            for (int i = 0; i < n; i++) {
+                out.putLong(deviceIds[i]).putLong(offset).putInt(streams[i].bitLength()).putInt(streams[i].count());
+                offset += streams[i].wordLength();
+            }
+            for (int i = 0; i < n; i++) {
+                long[] w = streams[i].words();
+                for (int j = 0, len = streams[i].wordLength(); j < len; j++) out.putLong(w[j]);
+            }
+            out.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    long epochDay() { return epochDay; }
+    Path file() { return file; }
+    int devices() { return devices; }
+    long bytes() { return map.capacity(); }
+
+    /** Reader over the device's stream, or null if the device had no windows that day. */
+    GorillaStream.Reader reader(long deviceId) {
+        int lo = 0, hi = devices - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = HEADER + mid * ENTRY;
+            long id = map.getLong(at);
+            if (id < deviceId) {
+                lo = mid + 1;
+            } else if (id > deviceId) {
+                hi = mid - 1;
+            } else {
+                int wordOffset = (int) map.getLong(at + 8);
+                int bitLength = map.getInt(at + 16);
+                int count = map.getInt(at + 20);
+                LongBuffer words = data.slice(wordOffset, (bitLength + 63) >>> 6);
+                return new GorillaStream.Reader(words, count);
+            }
+        }
+        return null;
+    }
+}
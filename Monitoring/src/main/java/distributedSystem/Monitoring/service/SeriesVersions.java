@@ -0,0 +1,69 @@
+// src/main/java/distributedSystem/Monitoring/service/SeriesVersions.java
+package distributedSystem.Monitoring.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counter per (device, UTC day) of window_consumption, bumped by the flush writer after each
+ * commit. A cached series computed at {@link #current()} is still exact as long as none of the
+ * device-days it covers changed since ({@link #unchangedSince}).
+ * Days older than {@link #TRACKED_DAYS} are collapsed into one floor version, so the table stays small.
+ */
+@Component
+public class SeriesVersions {
+
+    private static final long DAY_MS = 86_400_000L;
+    static final int TRACKED_DAYS = 3;
+
+    private final AtomicLong seq = new AtomicLong();
+    // key: deviceId << 20 | epochDay (20 bits are enough until the year 4840)
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    private volatile long prunedBeforeDay = Long.MIN_VALUE;
+    private volatile long prunedAt;
+
+    /** Version to remember with a value read from the database now. Read it before reading the rows. */
+    public long current() {
+        return seq.get();
+    }
+
+    /** Flush writer, after the commit: {@code merged} is sorted by (device, window). */
+    void changed(SealedDeltas merged, long windowSizeMillis) {
+        if (merged.size() == 0) return;
+        long v = seq.incrementAndGet();
+        long lastKey = Long.MIN_VALUE;
+        for (int i = 0; i < merged.size(); i++) {
+            long key = key(merged.deviceId(i), Math.floorDiv(merged.windowIndex(i) * windowSizeMillis, DAY_MS));
+            if (key != lastKey) {
+                versions.put(key, v);
+                lastKey = key;
+            }
+        }
+        prune(Math.floorDiv(System.currentTimeMillis(), DAY_MS) - TRACKED_DAYS, v);
+    }
+
+    /** Whether no window of {@code deviceId} starting in [fromMillis, toMillis) changed after {@code version}. */
+    public boolean unchangedSince(long deviceId, long fromMillis, long toMillis, long version) {
+        for (long day = Math.floorDiv(fromMillis, DAY_MS); day <= Math.floorDiv(toMillis - 1, DAY_MS); day++) {
+            Long v = versions.get(key(deviceId, day));
+            if (v != null && v > version) return false;
+            if (day < prunedBeforeDay && prunedAt > version) return false;
+        }
+        return true;
+    }
+
+    private void prune(long beforeDay, long v) {
+        if (beforeDay <= prunedBeforeDay) return;
+        // publish the floor first: an entry computed before now must not look valid once its key is gone
+        prunedAt = v;
+        prunedBeforeDay = beforeDay;
+        versions.keySet().removeIf(k -> (k & 0xFFFFF) < beforeDay);
+    }
+
+    private static long key(long deviceId, long epochDay) {
+        return deviceId << 20 | (epochDay & 0xFFFFF);
+    }
+}
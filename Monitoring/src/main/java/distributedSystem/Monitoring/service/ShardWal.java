@@ -0,0 +1,338 @@
+// src/main/java/distributedSystem/Monitoring/service/ShardWal.java
+package distributedSystem.Monitoring.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log + snapshots of one shard's bucket totals, so a restart does not forget window
+ * totals and alerted flags. Owner-thread only, like the shard itself.
+ * <p>
+ * Files live in one directory per partition and come in generations: {@code gen-N.snap} holds every
+ * open bucket as of Kafka offset S, {@code gen-N.wal} is a memory-mapped log of the fixed-size
+ * records applied after it (ADD, ALERT, and an OFFSET marker after each applied record or poll).
+ * A new snapshot starts the next generation; the previous one is kept in case its successor's offset
+ * never made it to the database.
+ * <p>
+ * Recovery for consumer position P takes the newest snapshot with S &lt;= P and replays its log up
+ * to the last OFFSET marker &lt;= P; everything after P is consumed again from Kafka. Recovered
+ * state only restores totals, pending deltas stay empty because the database already has them.
+ */
+final class ShardWal implements Closeable {
+
+    static final int RECORD_BYTES = 32;
+    private static final int ADD = 1, ALERT = 2, OFFSET = 3;
+
+    private static final int SNAPSHOT_MAGIC = 0x57534E50;   // "WSNP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 24;     // magic, version, offset, count, crc
+    private static final int SNAPSHOT_ENTRY_BYTES = 29;      // device, window, kwh, samples, alerted
+
+    /** Outcome of {@link #recover}; generation is -1 when no usable snapshot was found. */
+    record Recovery(long generation, long snapshotOffset, int snapshotBuckets, long replayedRecords, long skippedRecords) {}
+
+    private final Path dir;
+    private final int segmentBytes;
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private boolean snapshotRequested;
+    private long lastSnapshotMillis;
+
+    private ShardWal(Path dir, int segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // ====== recovery ======
+
+    /** Rebuilds {@code store} (expected empty) from the files in {@code dir} for consumer position {@code position}. */
+    static Recovery recover(Path dir, long position, BucketStore store) throws IOException {
+        if (!Files.isDirectory(dir)) return new Recovery(-1, -1, 0, 0, 0);
+
+        List<Long> gens = generations(dir, ".snap");
+        for (int i = gens.size() - 1; i >= 0; i--) {
+            long gen = gens.get(i);
+            long snapshotOffset = readSnapshotOffset(snapshotPath(dir, gen));
+            if (snapshotOffset < 0 || snapshotOffset > position) continue;
+
+            int buckets = loadSnapshot(snapshotPath(dir, gen), store);
+            long[] replay = replay(walPath(dir, gen), position, store);
+            return new Recovery(gen, snapshotOffset, buckets, replay[0], replay[1]);
+        }
+        return new Recovery(-1, -1, 0, 0, 0);
+    }
+
+    /**
+     * Starts a new generation whose snapshot is {@code store} at {@code position} and drops older files.
+     * Called right after {@link #recover}, so log records beyond {@code position} can never be replayed twice.
+     */
+    static ShardWal open(Path dir, long position, BucketStore store, int segmentBytes) throws IOException {
+        Files.createDirectories(dir);
+        ShardWal wal = new ShardWal(dir, Math.max(RECORD_BYTES * 1024, segmentBytes));
+        List<Long> gens = generations(dir, ".snap");
+        gens.addAll(generations(dir, ".wal"));
+        wal.generation = gens.stream().mapToLong(Long::longValue).max().orElse(0);
+        wal.roll(store, position, false);
+        return wal;
+    }
+
+    // ====== logging (owner thread, on the ingest path) ======
+
+    void logAdd(long deviceId, long windowIndex, double kwh, int samples) {
+        append(ADD, samples, deviceId, windowIndex, Double.doubleToRawLongBits(kwh));
+    }
+
+    void logAlert(long deviceId, long windowIndex) {
+        append(ALERT, 0, deviceId, windowIndex, 0L);
+    }
+
+    /** Marks everything logged so far as belonging to records before {@code nextOffset}. */
+    void logOffset(long nextOffset) {
+        append(OFFSET, 0, 0L, 0L, nextOffset);
+    }
+
+    /** True when the log segment is filling up; checked on every record boundary. */
+    boolean snapshotRequested() {
+        return snapshotRequested;
+    }
+
+    /** True when the log is filling up or {@code intervalMillis} passed since the last snapshot. */
+    boolean snapshotDue(long nowMillis, long intervalMillis) {
+        return snapshotRequested || nowMillis - lastSnapshotMillis >= intervalMillis;
+    }
+
+    /** Snapshots {@code store} as of {@code nextOffset}; must be called on a record boundary. */
+    void snapshot(BucketStore store, long nextOffset) {
+        try {
+            roll(store, nextOffset, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("WAL snapshot failed in " + dir, e);
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /** Bytes used by the current log segment. */
+    long logBytes() {
+        return segment.position();
+    }
+
+    @Override
+    public void close() {
+        if (segment != null) segment.force();
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(int type, int samples, long a, long b, long c) {
+        if (segment.remaining() < RECORD_BYTES) grow();
+        int pos = segment.position();
+        segment.putInt(pos + 4, samples);
+        segment.putLong(pos + 8, a);
+        segment.putLong(pos + 16, b);
+        segment.putLong(pos + 24, c);
+        segment.putInt(pos, type);   // type last: a record is only valid once its type is set
+        segment.position(pos + RECORD_BYTES);
+        if (pos + RECORD_BYTES > segmentBytes - segmentBytes / 4) snapshotRequested = true;
+    }
+
+    /** A burst outgrew the segment before the next record boundary: map a larger file and snapshot soon. */
+    private void grow() {
+        try {
+            int pos = segment.position();
+            segment.force();
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segment.capacity() * 2);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segment.position(pos);
+            snapshotRequested = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("WAL segment grow failed in " + dir, e);
+        }
+    }
+
+    private void roll(BucketStore store, long nextOffset, boolean keepPrevious) throws IOException {
+        long next = generation + 1;
+        writeSnapshot(snapshotPath(dir, next), store, nextOffset);
+
+        if (segment != null) close();
+        channel = FileChannel.open(walPath(dir, next),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+
+        long keepFrom = keepPrevious ? generation : next;
+        generation = next;
+        snapshotRequested = false;
+        lastSnapshotMillis = System.currentTimeMillis();
+        deleteGenerationsBefore(keepFrom);
+    }
+
+    // ====== files ======
+
+    private static void writeSnapshot(Path target, BucketStore store, long nextOffset) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int[] count = {0};
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            ch.position(SNAPSHOT_HEADER_BYTES);
+            try {
+                store.forEachBucket((d, w, kwh, samples, alerted) -> {
+                    if (buf.remaining() < SNAPSHOT_ENTRY_BYTES) drain(ch, buf, crc);
+                    buf.putLong(d).putLong(w).putDouble(kwh).putInt(samples).put((byte) (alerted ? 1 : 0));
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            drain(ch, buf, crc);
+
+            buf.clear();
+            buf.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(nextOffset)
+                    .putInt(count[0]).putInt((int) crc.getValue()).flip();
+            ch.write(buf, 0);
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf, CRC32 crc) {
+        buf.flip();
+        crc.update(buf.duplicate());
+        try {
+            while (buf.hasRemaining()) ch.write(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.clear();
+    }
+
+    /** Offset recorded in the snapshot header, or -1 if the file is not a complete snapshot. */
+    private static long readSnapshotOffset(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < SNAPSHOT_HEADER_BYTES) return -1;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(h, 0);
+            h.flip();
+            if (h.getInt() != SNAPSHOT_MAGIC || h.getInt() != SNAPSHOT_VERSION) return -1;
+            long offset = h.getLong();
+            int count = h.getInt();
+            return Files.size(file) == SNAPSHOT_HEADER_BYTES + (long) count * SNAPSHOT_ENTRY_BYTES ? offset : -1;
+        }
+    }
+
+    private static int loadSnapshot(Path file, BucketStore store) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            m.position(16);
+            int count = m.getInt();
+            int expectedCrc = m.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(m.duplicate().position(SNAPSHOT_HEADER_BYTES));
+            if ((int) crc.getValue() != expectedCrc) throw new IOException("Corrupt WAL snapshot " + file);
+
+            for (int i = 0; i < count; i++) {
+                store.restore(m.getLong(), m.getLong(), m.getDouble(), m.getInt(), m.get() != 0);
+            }
+            return count;
+        }
+    }
+
+    /** Applies log records up to the last OFFSET marker &lt;= position. Returns {replayed, skipped}. */
+    private static long[] replay(Path file, long position, BucketStore store) throws IOException {
+        if (!Files.exists(file)) return new long[]{0, 0};
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            m.order(ByteOrder.LITTLE_ENDIAN);
+
+            long replayed = 0, total = 0;
+            int groupStart = 0;
+            boolean past = false;
+            int end = (int) Math.min(ch.size(), Integer.MAX_VALUE) / RECORD_BYTES * RECORD_BYTES;
+            for (int pos = 0; pos < end; pos += RECORD_BYTES) {
+                int type = m.getInt(pos);
+                if (type == 0) break;
+                if (type != OFFSET) {
+                    total++;
+                    continue;
+                }
+                if (past || m.getLong(pos + 24) > position) {
+                    past = true;   // keep counting what is left for the report
+                    continue;
+                }
+
+                // the group [groupStart, pos) was fully applied before nextOffset <= position
+                for (int r = groupStart; r < pos; r += RECORD_BYTES) {
+                    long d = m.getLong(r + 8), w = m.getLong(r + 16);
+                    if (m.getInt(r) == ADD) {
+                        store.restore(d, w, Double.longBitsToDouble(m.getLong(r + 24)), m.getInt(r + 4), false);
+                    } else {
+                        store.restore(d, w, 0.0, 0, true);
+                    }
+                    replayed++;
+                }
+                groupStart = pos + RECORD_BYTES;
+            }
+            return new long[]{replayed, total - replayed};
+        }
+    }
+
+    private void deleteGenerationsBefore(long keepFrom) throws IOException {
+        for (String ext : new String[]{".snap", ".wal"}) {
+            for (long gen : generations(dir, ext)) {
+                if (gen < keepFrom) Files.deleteIfExists(dir.resolve(name(gen, ext)));
+            }
+        }
+    }
+
+    private static List<Long> generations(Path dir, String ext) throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("gen-") && n.endsWith(ext))
+                    .forEach(n -> {
+                        try {
+                            out.add(Long.parseLong(n.substring(4, n.length() - ext.length())));
+                        } catch (NumberFormatException ignored) {
+                            // not one of ours
+                        }
+                    });
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private static Path snapshotPath(Path dir, long gen) {
+        return dir.resolve(name(gen, ".snap"));
+    }
+
+    private static Path walPath(Path dir, long gen) {
+        return dir.resolve(name(gen, ".wal"));
+    }
+
+    private static String name(long gen, String ext) {
+        return String.format("gen-%016d%s", gen, ext);
+    }
+}
@@ -0,0 +1,186 @@
+// src/main/java/distributedSystem/Monitoring/service/ThresholdTable.java
+package distributedSystem.Monitoring.service;
+
+import distributedSystem.Monitoring.model.DeviceMonitoringRef;
+import distributedSystem.Monitoring.repository.DeviceMonitoringRefRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory copy of device_monitoring_ref (device -> owner + max consumption) for alert evaluation.
+ * Readers get a lock-free lookup on an immutable open-addressing snapshot; writers (startup load,
+ * device events, reload) build a new snapshot and publish it through a volatile field.
+ * Device events are rare, so copy-on-write is cheaper than locking the ingest path.
+ */
+@Component
+public class ThresholdTable implements MeterBinder {
+
+    /** Owner and limit of one device; pre-built, so lookups do not allocate. */
+    public record Ref(long deviceId, long userId, int maxConsumption) {}
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final DeviceMonitoringRefRepository repository;
+
+    private volatile Snapshot snapshot = Snapshot.of(List.of(), System.currentTimeMillis());
+    private volatile long lastEventMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ThresholdTable(DeviceMonitoringRefRepository repository) {
+        this.repository = repository;
+    }
+
+    /** Load before the Kafka containers start so the first readings are evaluated against real limits. */
+    @PostConstruct
+    public void bootstrap() {
+        reload();
+    }
+
+    /** Safety net for missed device events; the events keep the table current in between. */
+    @Scheduled(
+            initialDelayString = "#{${app.thresholds.refresh-seconds:300} * 1000}",
+            fixedDelayString = "#{${app.thresholds.refresh-seconds:300} * 1000}"
+    )
+    public void scheduledReload() {
+        reload();
+    }
+
+    /** Replaces the table with the current contents of device_monitoring_ref. Returns the device count. */
+    public synchronized int reload() {
+        List<Ref> refs = repository.findAll().stream()
+                .filter(r -> r.getDevice_id() != null)
+                .map(ThresholdTable::toRef)
+                .toList();
+        snapshot = Snapshot.of(refs, System.currentTimeMillis());
+        return refs.size();
+    }
+
+    /** Device created (or already known): keep the table in line with the stored row. */
+    public synchronized void put(DeviceMonitoringRef ref) {
+        if (ref.getDevice_id() == null) return;
+        Snapshot cur = snapshot;
+        Ref r = toRef(ref);
+        Ref[] values = Arrays.copyOf(cur.values, cur.values.length + 1);
+        int n = 0;
+        for (Ref v : cur.values) {
+            if (v.deviceId() != r.deviceId()) values[n++] = v;
+        }
+        values[n++] = r;
+        snapshot = Snapshot.of(Arrays.asList(values).subList(0, n), cur.loadedAtMillis);
+        lastEventMillis = System.currentTimeMillis();
+    }
+
+    public synchronized void remove(long deviceId) {
+        Snapshot cur = snapshot;
+        if (cur.find(deviceId) == null) return;
+        List<Ref> values = Arrays.stream(cur.values).filter(v -> v.deviceId() != deviceId).toList();
+        snapshot = Snapshot.of(values, cur.loadedAtMillis);
+        lastEventMillis = System.currentTimeMillis();
+    }
+
+    /** Hot path: reference for the device or null if it is not monitored. Counts hits/misses. */
+    public Ref get(long deviceId) {
+        Ref r = snapshot.find(deviceId);
+        (r != null ? hits : misses).increment();
+        return r;
+    }
+
+    /** Devices owned by {@code userId}, sorted; a scan of the snapshot, not for the ingest path. */
+    public long[] devicesOf(long userId) {
+        return Arrays.stream(snapshot.values).filter(r -> r.userId() == userId)
+                .mapToLong(Ref::deviceId).sorted().toArray();
+    }
+
+    public int size() {
+        return snapshot.values.length;
+    }
+
+    /** When the table was last loaded in full from the database. */
+    public long loadedAtMillis() {
+        return snapshot.loadedAtMillis;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("monitoring.thresholds.lookups", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Alert threshold lookups served from memory")
+                .register(registry);
+        FunctionCounter.builder("monitoring.thresholds.lookups", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Alert threshold lookups for devices without a monitoring ref")
+                .register(registry);
+        Gauge.builder("monitoring.thresholds.size", this, ThresholdTable::size)
+                .description("Devices in the in-memory threshold table")
+                .register(registry);
+        Gauge.builder("monitoring.thresholds.age", this,
+                        t -> (System.currentTimeMillis() - t.loadedAtMillis()) / 1000.0)
+                .baseUnit("seconds")
+                .description("Time since the threshold table was last reloaded from the database")
+                .register(registry);
+        Gauge.builder("monitoring.thresholds.event.age", this,
+                        t -> t.lastEventMillis == 0 ? Double.NaN : (System.currentTimeMillis() - t.lastEventMillis) / 1000.0)
+                .baseUnit("seconds")
+                .description("Time since the last device created/deleted event was applied")
+                .register(registry);
+    }
+
+    private static Ref toRef(DeviceMonitoringRef ref) {
+        return new Ref(ref.getDevice_id(), ref.getUserId() == null ? 0L : ref.getUserId(), ref.getMaximConsumptionValue());
+    }
+
+    /** Immutable linear-probing table, load factor <= 0.5. */
+    private static final class Snapshot {
+        final long[] keys;
+        final Ref[] slots;
+        final Ref[] values;
+        final int mask;
+        final long loadedAtMillis;
+
+        private Snapshot(Ref[] values, long loadedAtMillis) {
+            int cap = Integer.highestOneBit(Math.max(8, values.length * 2 - 1)) << 1;
+            this.keys = new long[cap];
+            this.slots = new Ref[cap];
+            this.values = values;
+            this.mask = cap - 1;
+            this.loadedAtMillis = loadedAtMillis;
+            Arrays.fill(keys, EMPTY);
+            for (Ref r : values) {
+                int i = slot(r.deviceId());
+                while (keys[i] != EMPTY && keys[i] != r.deviceId()) i = (i + 1) & mask;
+                keys[i] = r.deviceId();
+                slots[i] = r;
+            }
+        }
+
+        static Snapshot of(List<Ref> values, long loadedAtMillis) {
+            return new Snapshot(values.toArray(new Ref[0]), loadedAtMillis);
+        }
+
+        Ref find(long deviceId) {
+            int i = slot(deviceId);
+            long k;
+            while ((k = keys[i]) != EMPTY) {
+                if (k == deviceId) return slots[i];
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -1,199 +1,645 @@
 // src/main/java/distributedSystem/Monitoring/service/WindowAggregator.java
 package distributedSystem.Monitoring.service;
 
-import distributedSystem.Monitoring.dto.DeviceSummaryDto;
+import distributedSystem.Monitoring.dto.LateReadingDto;
 import distributedSystem.Monitoring.dto.OverconsumptionAlertDto;
 import distributedSystem.Monitoring.kafka.AlertProducer;
-import distributedSystem.Monitoring.model.WindowConsumption;
-import distributedSystem.Monitoring.repository.DeviceMonitoringRefRepository;
+import distributedSystem.Monitoring.kafka.LateReadingProducer;
 import distributedSystem.Monitoring.repository.WindowConsumptionRepository;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-window consumption aggregation and overconsumption alerting.
+ * Buckets are sharded by Kafka partition: each consumer thread is the single writer of the shards of
+ * the partitions assigned to it. The flush never touches a shard; it bumps an epoch, owners seal
+ * their pending deltas into {@link SealedDeltas} and publish them on a lock-free queue.
+ * A dedicated writer thread takes the sealed generation to the DB and hands the buffers back to
+ * their shards for reuse, so ingest never waits on the database.
+ * <p>
+ * Each partition keeps an event-time watermark (the highest event time applied to it, but never more than
+ * app.window.max-watermark-skew-minutes ahead of the wall clock; wall clock with app.window.use-processing-time). A window closes once the watermark is past its end by more than
+ * app.window.allowed-lateness-minutes: its last delta is sealed, the bucket is evicted, and readings
+ * that still arrive for it go to the {@link LateReadingProducer} side output instead of recreating it.
+ * Memory therefore holds only the windows still open.
+ * <p>
+ * Flushes follow an adaptive cadence ({@link FlushCadence}) instead of a fixed delay: a shard whose
+ * dirty buckets reach app.flush.high-water-buckets pulls the next flush forward, and slow writes
+ * stretch the interval so each transaction carries more buckets.
+ */
 @Service
-public class WindowAggregator {
-
-    /** Keyed by numeric device id to avoid "device-1" vs "device-001" splitting buckets. */
-    public record Key(Long deviceId, Instant windowStartUtc) {}
-
-    /**
-     * Keeps window totals (for alerting) and deltas (for periodic DB flush).
-     * One Bucket represents one (device, windowStart) pair.
-     */
-    public static final class Bucket {
-        // running totals for the current window (used for alert decision)
-        volatile double totalKwh;
-        volatile int totalSamples;
-
-        // delta accumulated since last flush (used for upsertAdd)
-        volatile double pendingKwh;
-        volatile int pendingSamples;
-
-        // ensures only one alert per window
-        volatile boolean alerted;
-
-        Bucket(double firstKwh) {
-            this.totalKwh = firstKwh;
-            this.totalSamples = 1;
-            this.pendingKwh = firstKwh;
-            this.pendingSamples = 1;
-            this.alerted = false;
-        }
-
-        void add(double v) {
-            this.totalKwh += v;
-            this.totalSamples += 1;
-            this.pendingKwh += v;
-            this.pendingSamples += 1;
-        }
-
-        /** Extract and reset deltas atomically under compute. */
-        Delta drainPending() {
-            Delta d = new Delta(this.pendingKwh, this.pendingSamples);
-            this.pendingKwh = 0.0;
-            this.pendingSamples = 0;
-            return d;
-        }
-    }
+public class WindowAggregator implements MeterBinder {
 
-    public record Delta(double kwh, int samples) {}
+    private static final Logger log = LoggerFactory.getLogger(WindowAggregator.class);
 
     private final WindowConsumptionRepository windowRepo;
-    private final DeviceMonitoringRefRepository deviceMonitoringRefRepository;
+    private final WindowFlushWriter flushWriter;
+    private final ThresholdTable thresholds;
     private final AlertProducer alertProducer;
-    private final LastSeenService lastSeen;
-
-    private final Map<Key, Bucket> buf = new ConcurrentHashMap<>();
+    private final DeviceIdCodec deviceIds;
+    private final TransactionTemplate tx;
+    private final IngestOffsetStore offsetStore;
+    private final AggregatorWal wal;
+    private final RecentSeriesStore recentSeries;
+    private final SeriesVersions seriesVersions;
+    private final LiveConsumptionHub live;
+    private final LateReadingProducer lateReadings;
+
+    private final Map<Integer, AggregatorShard> shards = new ConcurrentHashMap<>();
+    private final Queue<SealedDeltas> handoff = new ConcurrentLinkedQueue<>();
+    private final AtomicLong flushEpoch = new AtomicLong();
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "window-flush-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean writeQueued = new AtomicBoolean();
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "window-flush-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final FlushCadence cadence;
+    private final int flushHighWater;
+    // set by a shard over the high-water mark, cleared by the next flush
+    private final AtomicBoolean flushPressure = new AtomicBoolean();
+    private final LongAdder earlyFlushes = new LongAdder();
+    private final Timer alertEvaluation;
+    private final Timer alertLag;
+    private volatile long flushIntervalMillis;
+    // scheduler thread only
+    private ScheduledFuture<?> nextFlush;
+    private long lastFlushMillis;
+    // held while a sealed generation is being written, so a rebalance sees either none or all of it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // writer thread only
+    private final List<SealedDeltas> writing = new ArrayList<>();
+    private final SealedDeltas merged = new SealedDeltas(-1, 0);
+    private volatile long writingDeltas;
 
     private final int windowMinutes;
     private final boolean useProcessingTime;
-    private final String devicePrefix;
-    private final int idPad;
+    private final long allowedLatenessMillis;
+    private final long maxFutureMillis;
+    private final long watermarkSkewMillis;
+    private final boolean offsetsInDb;
+    private final BucketStore.Kind bucketStoreKind;
+    private final int bucketStoreCapacity;
 
     public WindowAggregator(
             WindowConsumptionRepository windowRepo,
-            DeviceMonitoringRefRepository deviceMonitoringRefRepository,
+            WindowFlushWriter flushWriter,
+            ThresholdTable thresholds,
             AlertProducer alertProducer,
-            LastSeenService lastSeen,
+            DeviceIdCodec deviceIds,
+            TransactionTemplate tx,
+            IngestOffsetStore offsetStore,
+            AggregatorWal wal,
+            RecentSeriesStore recentSeries,
+            SeriesVersions seriesVersions,
+            LiveConsumptionHub live,
+            LateReadingProducer lateReadings,
+            MeterRegistry meterRegistry,
             @Value("${app.aggregate-minutes:60}") int windowMinutes,
             @Value("${app.window.use-processing-time:false}") boolean useProcessingTime,
-            @Value("${app.device-prefix:device-}") String devicePrefix,
-            @Value("${app.device-id-pad:3}") int idPad
+            @Value("${app.window.allowed-lateness-minutes:60}") int allowedLatenessMinutes,
+            @Value("${app.window.max-future-minutes:10}") int maxFutureMinutes,
+            @Value("${app.window.max-watermark-skew-minutes:10}") int watermarkSkewMinutes,
+            @Value("${app.bucket-store.kind:object}") String bucketStoreKind,
+            @Value("${app.bucket-store.initial-capacity:4096}") int bucketStoreCapacity,
+            @Value("${app.ingest.offsets-in-db:false}") boolean offsetsInDb,
+            @Value("${app.flush-seconds:5}") long flushSeconds,
+            @Value("${app.flush.min-interval-ms:500}") long flushMinIntervalMs,
+            @Value("${app.flush.max-interval-seconds:60}") long flushMaxIntervalSeconds,
+            @Value("${app.flush.high-water-buckets:20000}") int flushHighWater
     ) {
         this.windowRepo = windowRepo;
-        this.deviceMonitoringRefRepository = deviceMonitoringRefRepository;
+        this.flushWriter = flushWriter;
+        this.thresholds = thresholds;
         this.alertProducer = alertProducer;
-        this.lastSeen = lastSeen;
+        this.deviceIds = deviceIds;
+        this.tx = tx;
+        this.offsetStore = offsetStore;
+        this.wal = wal;
+        this.recentSeries = recentSeries;
+        this.seriesVersions = seriesVersions;
+        this.live = live;
+        this.lateReadings = lateReadings;
 
         this.windowMinutes = Math.max(1, windowMinutes);
         this.useProcessingTime = useProcessingTime;
-        this.devicePrefix = devicePrefix;
-        this.idPad = Math.max(0, idPad);
+        this.allowedLatenessMillis = Math.max(0, allowedLatenessMinutes) * 60_000L;
+        this.maxFutureMillis = Math.max(0, maxFutureMinutes) * 60_000L;
+        this.watermarkSkewMillis = Math.max(0, watermarkSkewMinutes) * 60_000L;
+        this.bucketStoreKind = BucketStore.Kind.of(bucketStoreKind); // fails fast on a bad app.bucket-store.kind
+        this.bucketStoreCapacity = bucketStoreCapacity;
+        this.offsetsInDb = offsetsInDb;
+        this.cadence = new FlushCadence(flushSeconds * 1000, flushMinIntervalMs, flushMaxIntervalSeconds * 1000);
+        this.flushHighWater = Math.max(1, flushHighWater);
+        this.alertEvaluation = Timer.builder("monitoring.alert.evaluation")
+                .description("Threshold lookup and overconsumption check of one window update")
+                .register(meterRegistry);
+        this.alertLag = Timer.builder("monitoring.alert.lag")
+                .description("Event time of the reading that crossed the threshold to the alert being sent")
+                .register(meterRegistry);
+    }
+
+    /** Start of the aggregation window containing {@code basis}. */
+    public Instant windowStart(Instant basis) {
+        return Instant.ofEpochMilli(windowStartMillis(basis.toEpochMilli()));
+    }
+
+    /** Primitive variant of {@link #windowStart(Instant)} used on the ingest path. */
+    public long windowStartMillis(long epochMillis) {
+        return windowIndex(epochMillis) * windowSizeMillis();
+    }
+
+    private long windowIndex(long epochMillis) {
+        return Math.floorDiv(epochMillis, windowSizeMillis());
     }
 
-    private Instant windowStart(Instant basis) {
-        long epochSec = basis.getEpochSecond();
-        long sizeSec = windowMinutes * 60L;
-        long start = (epochSec / sizeSec) * sizeSec;
-        return Instant.ofEpochSecond(start);
+    private long windowSizeMillis() {
+        return windowMinutes * 60_000L;
     }
 
     /**
-     * Called on every device reading.
+     * Whether the configured bucket store can hold readings of {@code deviceId}. Listeners skip the others
+     * at parse time, like readings without an id, so applying a poll never fails half-way.
+     */
+    public boolean accepts(long deviceId) {
+        return bucketStoreKind.accepts(deviceId);
+    }
+
+    /**
+     * Called on every device reading, on the consumer thread that owns {@code partition}.
      * - updates totals + pending deltas for this window
-     * - triggers alert immediately once totalKwh > threshold (if DeviceMonitoringRef exists)
+     * - triggers alert immediately once totalKwh > threshold (if the device is in {@link ThresholdTable})
+     * Device id is numeric (see {@link DeviceIdCodec}) and event time is epoch millis.
+     * Listeners call {@link #advance} once the record (or poll) is fully applied.
      */
-    public void add(String deviceIdStr, Instant eventTimestampUtc, double valueKwh) {
-        Long deviceId = extractDeviceId(deviceIdStr);
-        if (deviceId == null) return; // cannot map -> cannot alert, cannot aggregate reliably
-
-        Instant basis = useProcessingTime ? Instant.now() : eventTimestampUtc;
-        Instant win = windowStart(basis);
-        Key key = new Key(deviceId, win);
-
-        // Update bucket totals/deltas
-        Bucket bucket = buf.compute(key, (k, b) -> {
-            if (b == null) return new Bucket(valueKwh);
-            b.add(valueKwh);
-            return b;
-        });
+    public void add(int partition, long deviceId, long eventEpochMillis, double valueKwh) {
+        addSamples(partition, deviceId, eventEpochMillis, valueKwh, 1);
+    }
+
+    /**
+     * Applies several readings of one device that fall into the same window as a single update.
+     * Used by the batch listener, which pre-aggregates a whole poll before touching the shard.
+     */
+    public void addSamples(int partition, long deviceId, long eventEpochMillis, double sumKwh, int samples) {
+        if (samples <= 0 || !bucketStoreKind.accepts(deviceId)) return;
+        AggregatorShard shard = claim(partition);
+        BucketStore buf = shard.store;
+
+        long basis = useProcessingTime ? System.currentTimeMillis() : eventEpochMillis;
+        if (!useProcessingTime) {
+            long now = System.currentTimeMillis();
+            if (maxFutureMillis > 0 && basis > now + maxFutureMillis) {
+                reject(shard, deviceId, eventEpochMillis, sumKwh, samples, "future");
+                return;
+            }
+            // capped at the wall clock plus skew: one reading from a clock far ahead must not close
+            // every window the rest of the partition is still writing to
+            long watermark = Math.min(basis, now + watermarkSkewMillis);
+            if (watermark > shard.watermarkMillis) advanceWatermark(shard, watermark);
+        }
+        long win = windowIndex(basis);
+        if (win < shard.closedBefore) {
+            reject(shard, deviceId, eventEpochMillis, sumKwh, samples, "late");
+            return;
+        }
+
+        // Update bucket totals/deltas (single writer: this thread owns the shard)
+        double totalKwh = buf.add(deviceId, win, sumKwh, samples);
+        if (shard.wal != null) shard.wal.logAdd(deviceId, win, sumKwh, samples);
+        if (!shard.flushRequested && buf.dirtyCount() >= flushHighWater) {
+            shard.flushRequested = true;
+            requestFlush();
+        }
 
         // Alert logic (only if not already alerted in this window)
-        // We keep this outside compute to avoid doing DB work while holding the map's per-key lock.
-        if (!bucket.alerted) {
-            deviceMonitoringRefRepository.findById(deviceId).ifPresent(ref -> {
-                int threshold = ref.getMaximConsumptionValue();
+        if (!Double.isNaN(totalKwh)) {
+            long t0 = System.nanoTime();
+            ThresholdTable.Ref ref = thresholds.get(deviceId);
+            // If ref missing -> do nothing (no alert), as requested.
+            if (ref != null) {
+                int threshold = ref.maxConsumption();
 
                 // "instant": first moment the running total becomes strictly greater than threshold
-                if (!bucket.alerted && bucket.totalKwh > threshold) {
-                    bucket.alerted = true;
-
+                if (totalKwh > threshold && buf.markAlerted(deviceId, win)) {
+                    if (shard.wal != null) shard.wal.logAlert(deviceId, win);
+                    Instant now = Instant.now();
+                    alertLag.record(Math.max(0, now.toEpochMilli() - eventEpochMillis), TimeUnit.MILLISECONDS);
                     alertProducer.send(new OverconsumptionAlertDto(
-                            ref.getUserId(),
-                            ref.getDevice_id(),
-                            win,
+                            ref.userId(),
+                            ref.deviceId(),
+                            Instant.ofEpochMilli(win * windowSizeMillis()),
                             windowMinutes,
-                            bucket.totalKwh,
+                            totalKwh,
                             threshold,
-                            Instant.now()
+                            now
                     ));
                 }
-            });
-            // If ref missing -> do nothing (no alert), as requested.
+            }
+            alertEvaluation.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+
+        // Live subscribers see the running total before it is flushed; alerted buckets report NaN above
+        if (live.watching(deviceId)) {
+            double total = Double.isNaN(totalKwh) ? buf.total(deviceId, win) : totalKwh;
+            live.offer(deviceId, win * windowSizeMillis(), total, sumKwh, samples);
         }
     }
 
+    /** Owner thread: moves the watermark and closes every window it has passed by more than the lateness. */
+    private void advanceWatermark(AggregatorShard shard, long watermarkMillis) {
+        shard.watermarkMillis = watermarkMillis;
+        shard.closedBefore = windowIndex(watermarkMillis - allowedLatenessMillis);
+    }
+
+    private void reject(AggregatorShard shard, long deviceId, long eventEpochMillis, double kwh, int samples, String reason) {
+        lateReadings.send(new LateReadingDto(
+                deviceId,
+                Instant.ofEpochMilli(eventEpochMillis),
+                Instant.ofEpochMilli(windowStartMillis(eventEpochMillis)),
+                kwh,
+                samples,
+                reason,
+                shard.watermarkMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(shard.watermarkMillis),
+                shard.partition
+        ));
+    }
+
     /**
-     * Flush pending deltas to DB periodically.
-     * Keeps in-memory totals so alerting can work across multiple flush cycles.
+     * Single-record listener: marks everything before {@code nextOffset} of {@code partition} as applied
+     * and, if a flush started since the last seal, seals the caller's shards. Sealing here rather than
+     * inside {@link #addSamples} keeps the sealed offset and the sealed deltas consistent.
      */
-    @Scheduled(fixedDelayString = "#{${app.flush-seconds:5} * 1000}")
-    @Transactional
-    public void flush() {
-        if (buf.isEmpty()) return;
+    public void advance(int partition, long nextOffset) {
+        AggregatorShard shard = markApplied(partition, nextOffset);
+        if (shard.sealedEpoch != flushEpoch.get()) {
+            sealOwnedShards();
+        }
+    }
 
-        Instant now = Instant.now();
+    /**
+     * Batch listener: like {@link #advance(int, long)} for every partition of a poll. All offsets are
+     * recorded before any shard seals, so no shard is sealed with deltas newer than its offset.
+     */
+    public void advance(Map<Integer, Long> nextOffsets) {
+        boolean sealDue = false;
+        long epoch = flushEpoch.get();
+        for (Map.Entry<Integer, Long> e : nextOffsets.entrySet()) {
+            sealDue |= markApplied(e.getKey(), e.getValue()).sealedEpoch != epoch;
+        }
+        if (sealDue) sealOwnedShards();
+    }
 
-        // Drain deltas per key and write to DB
-        buf.forEach((k, ignored) -> {
-            final Delta[] drained = new Delta[1];
+    private AggregatorShard markApplied(int partition, long nextOffset) {
+        AggregatorShard shard = claim(partition);
+        if (nextOffset > shard.nextOffset) {
+            shard.nextOffset = nextOffset;
+            if (shard.wal != null) {
+                shard.wal.logOffset(nextOffset);
+                if (shard.wal.snapshotRequested()) snapshot(shard);   // log filling up
+            }
+        }
+        return shard;
+    }
 
-            buf.computeIfPresent(k, (key, b) -> {
-                drained[0] = b.drainPending();
-                return b;
-            });
+    // ====== shard ownership (called on consumer threads) ======
+
+    /**
+     * Rebalance: the calling consumer thread takes over these partitions. With app.wal.enabled, shards
+     * that are not in memory yet are rehydrated from the local WAL as of their consumer position.
+     */
+    public void claimPartitions(Collection<Integer> partitions, Map<Integer, Long> positions) {
+        for (int p : partitions) {
+            boolean fresh = !shards.containsKey(p);
+            AggregatorShard shard = claim(p);
+            Long position = positions.get(p);
+            if (fresh && position != null && wal.enabled()) {
+                shard.wal = wal.open(p, position, shard.store);
+                shard.nextOffset = position;
+                shard.sealedNextOffset = position;
+                shard.bucketCount = shard.store.size();
+            }
+            recentSeries.claim(p, position);
+        }
+    }
+
+    /**
+     * Rebalance with app.ingest.offsets-in-db: returns the positions to seek to for {@code partitions}.
+     * Sealed-but-unwritten deltas and in-memory buckets of those partitions are dropped, because
+     * consumption restarts from the last offset that was committed together with its deltas.
+     * Empty when offsets are left to Kafka.
+     */
+    public Map<Integer, Long> restorePartitions(Collection<Integer> partitions) {
+        if (!offsetsInDb || partitions.isEmpty()) return Map.of();
+        writeLock.lock();
+        try {
+            Set<Integer> restored = new HashSet<>(partitions);
+            handoff.removeIf(b -> restored.contains(b.partition()));
+            for (int p : restored) {
+                AggregatorShard dropped = shards.remove(p);
+                if (dropped != null && dropped.wal != null) dropped.wal.close();
+            }
+            return offsetStore.load(restored);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rebalance (and shutdown, when the containers stop): seals the given partitions one last time,
+     * snapshots them if a WAL is kept, and drops the shard. The sealed deltas are already in the handoff;
+     * the buckets are not kept, since whoever consumes the partition next moves its totals on, so a later
+     * reassignment starts from the WAL (or empty) like any new one.
+     */
+    public void releasePartitions(Collection<Integer> partitions) {
+        long epoch = flushEpoch.get();
+        for (int p : partitions) {
+            AggregatorShard shard = shards.get(p);
+            if (shard == null || !shard.ownedByCurrentThread()) continue;
+            seal(shard, epoch);
+            if (shard.wal != null) {
+                snapshot(shard);
+                if (shard.wal != null) shard.wal.close();
+            }
+            recentSeries.release(p);
+            shard.owner = null;
+            shards.remove(p, shard);
+        }
+    }
 
-            Delta d = drained[0];
-            if (d != null && d.samples() > 0) {
-                windowRepo.upsertAdd(
-                        normalizeDeviceId(String.valueOf(k.deviceId())),  // DB uses string device ids (device-001)
-                        k.windowStartUtc(),
-                        windowMinutes,
-                        d.kwh(),
-                        d.samples(),
-                        now
-                );
+    /** Seals every shard owned by the calling thread that has not sealed for the current flush epoch. */
+    public void sealOwnedShards() {
+        long epoch = flushEpoch.get();
+        for (AggregatorShard shard : shards.values()) {
+            if (shard.ownedByCurrentThread() && shard.sealedEpoch != epoch) {
+                seal(shard, epoch);
             }
+        }
+    }
+
+    private AggregatorShard claim(int partition) {
+        AggregatorShard shard = shards.get(partition);
+        if (shard == null) {
+            shard = shards.computeIfAbsent(partition,
+                    p -> new AggregatorShard(p, BucketStore.create(bucketStoreKind, bucketStoreCapacity)));
+        }
+        if (shard.owner != Thread.currentThread()) {
+            shard.owner = Thread.currentThread();
+        }
+        return shard;
+    }
+
+    /**
+     * Owner thread only: swaps the shard's pending deltas (the active generation) into a sealed buffer
+     * and publishes it. Costs O(dirty buckets); eviction runs only when the watermark closes a window.
+     */
+    private void seal(AggregatorShard shard, long epoch) {
+        SealedDeltas sealed = shard.takeBuffer();
+        shard.store.drainPending(sealed);
+
+        // Closed windows had their last delta drained above, so their buckets can go
+        if (useProcessingTime) advanceWatermark(shard, System.currentTimeMillis());
+        if (shard.closedBefore != shard.evictedBefore) {
+            shard.store.evictBefore(shard.closedBefore);
+            shard.evictedBefore = shard.closedBefore;
+        }
+
+        shard.bucketCount = shard.store.size();
+        shard.sealedEpoch = epoch;
+        shard.flushRequested = false;
+        if (shard.wal != null && shard.wal.snapshotDue(System.currentTimeMillis(), wal.snapshotIntervalMillis())) {
+            snapshot(shard);
+        }
+        boolean offsetMoved = offsetsInDb && shard.nextOffset != shard.sealedNextOffset;
+        if (sealed.size() > 0 || offsetMoved) {
+            sealed.nextOffset(shard.nextOffset);
+            sealed.closedBefore(shard.closedBefore);
+            shard.sealedNextOffset = shard.nextOffset;
+            handoff.add(sealed);
+        } else {
+            shard.recycle(sealed);
+        }
+    }
+
+    /** Owner thread, on a record boundary. A failing WAL is dropped rather than stopping ingest. */
+    private void snapshot(AggregatorShard shard) {
+        try {
+            shard.wal.snapshot(shard.store, shard.nextOffset);
+        } catch (RuntimeException e) {
+            log.warn("WAL snapshot of partition {} failed, continuing without WAL: {}", shard.partition, e.toString());
+            shard.wal.close();
+            shard.wal = null;
+        }
+    }
+
+    @PostConstruct
+    void startFlushScheduler() {
+        flushScheduler.execute(() -> {
+            lastFlushMillis = System.currentTimeMillis();
+            nextFlush = flushScheduler.schedule(this::flushTick, cadence.nextMillis(), TimeUnit.MILLISECONDS);
         });
+    }
+
+    /** Scheduler thread: one flush, then the next one after the current cadence. */
+    private void flushTick() {
+        flushPressure.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Window flush could not be started: {}", e.toString());
+        }
+        long now = System.currentTimeMillis();
+        flushIntervalMillis = now - lastFlushMillis;
+        lastFlushMillis = now;
+        nextFlush = flushScheduler.schedule(this::flushTick, cadence.nextMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Owner thread, a shard reached the high-water mark: moves the next flush up to the earliest the
+     * cadence allows. Only the first request per flush reaches the scheduler.
+     */
+    private void requestFlush() {
+        if (!flushPressure.compareAndSet(false, true)) return;
+        try {
+            flushScheduler.execute(() -> {
+                if (nextFlush == null) return;
+                long due = Math.max(0, lastFlushMillis + cadence.floorMillis() - System.currentTimeMillis());
+                if (nextFlush.getDelay(TimeUnit.MILLISECONDS) > due && nextFlush.cancel(false)) {
+                    earlyFlushes.increment();
+                    nextFlush = flushScheduler.schedule(this::flushTick, due, TimeUnit.MILLISECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Flush pending deltas to DB, on the adaptive cadence.
+     * Starts a new epoch (owners seal on their next record or idle event) and queues a write of
+     * whatever the shards have sealed so far on the writer thread. Keeps in-memory totals so
+     * alerting can work across flush cycles.
+     */
+    public void flush() {
+        flushEpoch.incrementAndGet();
+        if (!handoff.isEmpty() && writeQueued.compareAndSet(false, true)) {
+            flushExecutor.execute(this::writeSealed);
+        }
+    }
+
+    /**
+     * Writer thread: one transaction for everything sealed so far (plus the covered Kafka offsets when
+     * app.ingest.offsets-in-db is on), then the buffers go back to their shards.
+     */
+    private void writeSealed() {
+        writeQueued.set(false);
+        writeLock.lock();
+        try {
+            writeSealedLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeSealedLocked() {
+        SealedDeltas sealed;
+        while ((sealed = handoff.poll()) != null) writing.add(sealed);
+        if (writing.isEmpty()) return;
+
+        try {
+            // One row per (device, window) across all shards, written in multi-row chunks
+            merged.mergeFrom(writing);
+            writingDeltas = merged.size();
+            Instant now = Instant.now();
+            long started = System.nanoTime();
+            try {
+                tx.executeWithoutResult(status -> {
+                    flushWriter.write(merged, windowMinutes, windowSizeMillis(), now);
+                    if (offsetsInDb) offsetStore.save(writing, now);
+                });
+            } finally {
+                cadence.recordWrite(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            recentSeries.append(writing);
+            seriesVersions.changed(merged, windowSizeMillis());
+            for (SealedDeltas done : writing) {
+                AggregatorShard shard = shards.get(done.partition());
+                if (shard != null) shard.recycle(done);
+            }
+        } catch (RuntimeException e) {
+            // Keep the deltas; the next flush retries them together with newer ones
+            log.warn("Window flush of {} buckets failed, will retry: {}", merged.size(), e.toString());
+            handoff.addAll(writing);
+        } finally {
+            writing.clear();
+            writingDeltas = 0;
+        }
+    }
+
+    /**
+     * Graceful drain: the listener containers have stopped by now and released (sealed and snapshotted)
+     * their partitions, so write what is left and close the logs.
+     */
+    @PreDestroy
+    void stopFlushWriter() throws InterruptedException {
+        flushScheduler.shutdownNow();
+        flushExecutor.execute(this::writeSealed);
+        flushExecutor.shutdown();
+        if (!flushExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Final window flush did not finish in time, {} sealed batches left", handoff.size());
+        }
+        for (AggregatorShard shard : shards.values()) {
+            if (shard.wal != null) shard.wal.close();
+        }
+    }
+
+    /** Sealed deltas (one per device window) waiting for or being written by the flush writer; the DB backlog. */
+    public long pendingDeltas() {
+        long n = writingDeltas;
+        for (SealedDeltas sealed : handoff) n += sealed.size();
+        return n;
+    }
+
+    /** Window buckets held by all shards, as counted at each shard's last seal. */
+    public long bucketCount() {
+        long n = 0;
+        for (AggregatorShard shard : shards.values()) n += shard.bucketCount;
+        return n;
+    }
+
+    /** Smoothed duration of a flush transaction, 0 before the first. */
+    public double flushWriteMillis() {
+        return cadence.writeMillis();
+    }
 
-        // Cleanup: keep only recent windows in memory (prevents growth)
-        // Keep current + previous window (2 windows) to be safe.
-        Instant cutoff = now.minusSeconds(windowMinutes * 60L * 2L);
-        Instant cutoffWindow = windowStart(cutoff);
-        buf.keySet().removeIf(key -> key.windowStartUtc().isBefore(cutoffWindow));
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("monitoring.flush.interval", this, a -> a.flushIntervalMillis)
+                .baseUnit("milliseconds")
+                .description("Time between the last two window flushes (adaptive cadence)")
+                .register(registry);
+        Gauge.builder("monitoring.flush.write.time", cadence, FlushCadence::writeMillis)
+                .baseUnit("milliseconds")
+                .description("Smoothed duration of a flush transaction")
+                .register(registry);
+        Gauge.builder("monitoring.flush.pending", handoff, Queue::size)
+                .description("Sealed delta batches waiting for the flush writer")
+                .register(registry);
+        Gauge.builder("monitoring.flush.pending.deltas", this, WindowAggregator::pendingDeltas)
+                .description("Sealed deltas (device windows) waiting for the flush writer")
+                .register(registry);
+        Gauge.builder("monitoring.aggregator.buckets", this, WindowAggregator::bucketCount)
+                .description("Open window buckets held by the aggregator shards, as of their last seal")
+                .register(registry);
+        FunctionCounter.builder("monitoring.flush.early", earlyFlushes, LongAdder::sum)
+                .description("Flushes pulled forward by the dirty-bucket high-water mark")
+                .register(registry);
     }
 
     // ====== Reporting methods you already had ======
 
+    /** Windows of one device over one local day, oldest first; the arrays may be longer than {@code size}. */
+    public record DaySeries(String deviceId, ZoneId zone, long startMillis, long windowMillis,
+                            int virtualHourMinutes, long[] tsMillis, double[] kwh, int size) {}
+
     public List<Map<String, Object>> buildRawSeriesForDay(
             String deviceId, String date, String tz, int virtualHourMinutes
     ) {
+        return rows(readDaySeries(deviceId, date, tz, virtualHourMinutes));
+    }
+
+    public DaySeries readDaySeries(String deviceId, String date, String tz, int virtualHourMinutes) {
         String id = normalizeDeviceId(deviceId);
 
         ZoneId zone = ZoneId.of(tz);
@@ -204,49 +650,48 @@ public class WindowAggregator {
         ZonedDateTime zEnd = zStart.plusDays(1);
         Instant startUtc = zStart.toInstant();
         Instant endUtc = zEnd.toInstant();
+        long startMs = startUtc.toEpochMilli();
+        int vhm = Math.max(1, virtualHourMinutes);
+
+        // recent days of devices consumed here come from the embedded store, the rest from Postgres
+        RecentSeriesStore.Series recent = recentSeries.read(deviceIds.parse(id), startMs, endUtc.toEpochMilli());
+        if (recent != null) {
+            return new DaySeries(id, zone, startMs, windowSizeMillis(), vhm,
+                    recent.startMillis(), recent.kwh(), recent.size());
+        }
 
         List<Object[]> rows = windowRepo.findRawWindowsForDay(id, startUtc, endUtc);
+        long[] ts = new long[rows.size()];
+        double[] kwh = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ts[i] = toInstant(rows.get(i)[0]).toEpochMilli();
+            kwh[i] = ((Number) rows.get(i)[1]).doubleValue();
+        }
+        return new DaySeries(id, zone, startMs, windowSizeMillis(), vhm, ts, kwh, rows.size());
+    }
 
-        long startMs = startUtc.toEpochMilli();
-        long unitMs = Math.max(1, virtualHourMinutes) * 60_000L;
-
-        List<Map<String, Object>> out = new ArrayList<>(rows.size());
-        for (Object[] r : rows) {
-            Instant ts = toInstant(r[0]);
-            double kwh = ((Number) r[1]).doubleValue();
-
-            long tsMs = ts.toEpochMilli();
-            double xVirt = (tsMs - startMs) / (double) unitMs;
-
-            ZonedDateTime localTs = ts.atZone(zone);
-            out.add(Map.of(
-                    "hour", localTs.getHour(),
-                    "minute", localTs.getMinute(),
-                    "ts_utc", ts.toString(),
-                    "kwh", kwh,
-                    "x_virtual_hour", xVirt
-            ));
+    /** The default series shape: one object per window with local hour/minute and the virtual-hour x. */
+    public static List<Map<String, Object>> rows(DaySeries s) {
+        long unitMs = s.virtualHourMinutes() * 60_000L;
+        List<Map<String, Object>> out = new ArrayList<>(s.size());
+        for (int i = 0; i < s.size(); i++) {
+            out.add(seriesPoint(Instant.ofEpochMilli(s.tsMillis()[i]), s.kwh()[i], s.startMillis(), unitMs, s.zone()));
         }
         return out;
     }
 
-    public List<DeviceSummaryDto> listDeviceSummaries() {
-        List<WindowConsumption> rows = windowRepo.findLatestWindowPerDeviceNative();
-
-        return rows.stream()
-                .map(w -> {
-                    Instant last = lastSeen.get(w.getDeviceId());
-                    if (last == null) last = w.getUpdatedAtUtc();
-                    return new DeviceSummaryDto(
-                            w.getDeviceId(),
-                            w.getWindowStartUtc(),
-                            w.getWindowMinutes(),
-                            w.getKwh(),
-                            w.getSampleCount(),
-                            last
-                    );
-                })
-                .toList();
+    private static Map<String, Object> seriesPoint(Instant ts, double kwh, long startMs, long unitMs, ZoneId zone) {
+        long tsMs = ts.toEpochMilli();
+        double xVirt = (tsMs - startMs) / (double) unitMs;
+
+        ZonedDateTime localTs = ts.atZone(zone);
+        return Map.of(
+                "hour", localTs.getHour(),
+                "minute", localTs.getMinute(),
+                "ts_utc", ts.toString(),
+                "kwh", kwh,
+                "x_virtual_hour", xVirt
+        );
     }
 
     // ====== helpers ======
@@ -259,24 +704,13 @@ public class WindowAggregator {
     }
 
     /**
-     * Normalize numeric device id to the string format used in window_consumption (e.g. "device-001").
-     * If the input already looks like "device-XXX", it will be returned as-is by callers that pass strings.
+     * Normalize any accepted device id spelling to the string format used in window_consumption (e.g. "device-001").
      */
     private String normalizeDeviceId(String deviceId) {
-        Long id = extractDeviceId(deviceId);
+        String id = deviceIds.canonical(deviceId);
         if (id == null) {
             throw new IllegalArgumentException("Invalid deviceId: " + deviceId);
         }
-        return devicePrefix + String.format("%0" + idPad + "d", id);
-    }
-
-
-    /**
-     * Accepts "device-001", "001", "1" and extracts numeric id.
-     */
-    private Long extractDeviceId(String deviceIdStr) {
-        if (deviceIdStr == null) return null;
-        String digits = deviceIdStr.replaceAll("\\D+", "");
-        return digits.isBlank() ? null : Long.parseLong(digits);
+        return id;
     }
 }
@@ -0,0 +1,106 @@
+// src/main/java/distributedSystem/Monitoring/service/WindowFlushWriter.java
+package distributedSystem.Monitoring.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes flushed window deltas to window_consumption with multi-row
+ * {@code INSERT ... ON CONFLICT DO UPDATE} statements, {@code app.flush.chunk-size} rows each,
+ * instead of one native upsert per bucket, then the same deltas into the rollups ({@link RollupWriter})
+ * and the newest window per device ({@link DeviceLatestWindows}).
+ * Joins the caller's transaction.
+ */
+@Component
+public class WindowFlushWriter {
+
+    private static final String INSERT_HEAD = """
+            INSERT INTO window_consumption
+              (device_id, window_start_utc, window_minutes, kwh, sample_count, updated_at_utc)
+            VALUES""";
+    private static final String INSERT_TAIL = """
+            ON CONFLICT (device_id, window_start_utc, window_minutes)
+            DO UPDATE SET
+              kwh = window_consumption.kwh + EXCLUDED.kwh,
+              sample_count = window_consumption.sample_count + EXCLUDED.sample_count,
+              updated_at_utc = EXCLUDED.updated_at_utc
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final DeviceIdCodec deviceIds;
+    private final RollupWriter rollups;
+    private final DeviceLatestWindows latestWindows;
+    private final MultiRowUpsert upsert;
+
+    private final Timer flushTimer;
+    private final DistributionSummary flushRows;
+
+    public WindowFlushWriter(
+            JdbcTemplate jdbc,
+            DeviceIdCodec deviceIds,
+            RollupWriter rollups,
+            DeviceLatestWindows latestWindows,
+            MeterRegistry meterRegistry,
+            @Value("${app.flush.chunk-size:1000}") int chunkSize
+    ) {
+        this.jdbc = jdbc;
+        this.deviceIds = deviceIds;
+        this.rollups = rollups;
+        this.latestWindows = latestWindows;
+        this.upsert = new MultiRowUpsert(INSERT_HEAD, 6, INSERT_TAIL, chunkSize);
+
+        this.flushTimer = Timer.builder("monitoring.flush.duration")
+                .description("Time to write one flush of window deltas to window_consumption")
+                .register(meterRegistry);
+        this.flushRows = DistributionSummary.builder("monitoring.flush.rows")
+                .description("Window buckets written per flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Upserts every row of {@code deltas} (merged: one row per device/window, see {@link SealedDeltas#mergeFrom}).
+     * Returns the number of rows written.
+     */
+    public int write(SealedDeltas deltas, int windowMinutes, long windowSizeMillis, Instant nowUtc) {
+        int n = deltas.size();
+        if (n == 0) return 0;
+
+        long t0 = System.nanoTime();
+        OffsetDateTime now = OffsetDateTime.ofInstant(nowUtc, ZoneOffset.UTC);
+        int chunkSize = upsert.chunkSize();
+        for (int from = 0; from < n; from += chunkSize) {
+            int rows = Math.min(chunkSize, n - from);
+            int start = from;
+            jdbc.update(upsert.sqlFor(rows), (PreparedStatement ps) -> bindChunk(ps, deltas, start, rows, windowMinutes, windowSizeMillis, now));
+        }
+        rollups.write(deltas, windowSizeMillis, nowUtc);
+        latestWindows.write(deltas, windowMinutes, windowSizeMillis);
+        flushTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        flushRows.record(n);
+        return n;
+    }
+
+    private void bindChunk(PreparedStatement ps, SealedDeltas d, int from, int rows,
+                           int windowMinutes, long windowSizeMillis, OffsetDateTime now) throws SQLException {
+        int p = 1;
+        for (int i = from; i < from + rows; i++) {
+            ps.setString(p++, deviceIds.format(d.deviceId(i)));  // DB uses string device ids (device-001)
+            ps.setObject(p++, OffsetDateTime.ofInstant(Instant.ofEpochMilli(d.windowIndex(i) * windowSizeMillis), ZoneOffset.UTC));
+            ps.setInt(p++, windowMinutes);
+            ps.setDouble(p++, d.kwh(i));
+            ps.setInt(p++, d.samples(i));
+            ps.setObject(p++, now);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+// src/main/java/distributedSystem/Monitoring/service/WindowPartitionManager.java
+package distributedSystem.Monitoring.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Range-partitions window_consumption by window_start_utc (app.partitions.*).
+ * <p>
+ * Opt-in. Hibernate ({@code ddl-auto=update}) still creates the plain table on an empty database; at
+ * startup it is converted once into a partitioned table with the same columns and unique key, all rows
+ * copied in one transaction. Rows already past retention are not deleted by the conversion: they land in
+ * the DEFAULT partition (and are logged), where dropping expired partitions never touches them.
+ * Afterwards partitions (UTC days or months) are created {@code premake} periods ahead, and with
+ * {@code retention-days > 0} whole partitions past retention are dropped instead of deleting rows.
+ * A DEFAULT partition takes windows outside the prepared ranges (very late or far-future readings);
+ * its rows move into a partition when that range is created.
+ * <p>
+ * Range predicates on window_start_utc (day series, history, latest window) prune to the matching partitions.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class WindowPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(WindowPartitionManager.class);
+
+    static final String TABLE = "window_consumption";
+    static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String SEQUENCE = TABLE + "_part_id_seq";
+    /** Name of the unique key in {@code WindowConsumption}; Hibernate skips re-creating it when it exists. */
+    private static final String UNIQUE_KEY = "uk_window_consumption_device_window";
+
+    /** Partition width; names are window_consumption_pYYYYMMDD or _pYYYYMM. */
+    enum Granularity {
+        DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+        MONTH(ChronoUnit.MONTHS, DateTimeFormatter.ofPattern("yyyyMM"));
+
+        final ChronoUnit unit;
+        final DateTimeFormatter suffix;
+
+        Granularity(ChronoUnit unit, DateTimeFormatter suffix) {
+            this.unit = unit;
+            this.suffix = suffix;
+        }
+
+        static Granularity parse(String s) {
+            return switch (s.trim().toLowerCase(Locale.ROOT)) {
+                case "day", "daily" -> DAY;
+                case "month", "monthly" -> MONTH;
+                default -> throw new IllegalArgumentException("app.partitions.granularity must be day or month: " + s);
+            };
+        }
+
+        /** First day of the partition containing {@code day}. */
+        LocalDate floor(LocalDate day) {
+            return this == MONTH ? day.withDayOfMonth(1) : day;
+        }
+
+        LocalDate next(LocalDate start) {
+            return start.plus(1, unit);
+        }
+
+        String name(LocalDate start) {
+            return TABLE + "_p" + suffix.format(start);
+        }
+    }
+
+    /** A partition to exist: [start, end) in UTC. */
+    record Range(String name, LocalDate start, LocalDate end) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final Granularity granularity;
+    private final int premake;
+    private final int retentionDays;
+
+    public WindowPartitionManager(
+            JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            @Value("${app.partitions.enabled:false}") boolean enabled,
+            @Value("${app.partitions.granularity:day}") String granularity,
+            @Value("${app.partitions.premake:7}") int premake,
+            @Value("${app.partitions.retention-days:0}") int retentionDays
+    ) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.enabled = enabled;
+        this.granularity = Granularity.parse(granularity);
+        this.premake = Math.max(1, premake);
+        this.retentionDays = Math.max(0, retentionDays);
+    }
+
+    /** Runs before the Kafka containers start, so the first flush already lands in a partition. */
+    @PostConstruct
+    public void bootstrap() {
+        if (!enabled) return;
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.warn("window_consumption partition maintenance failed at startup: {}", e.toString());
+        }
+    }
+
+    @Scheduled(cron = "${app.partitions.maintenance-cron:0 7 * * * *}", zone = "UTC")
+    public void scheduledMaintain() {
+        if (!enabled) return;
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.warn("window_consumption partition maintenance failed: {}", e.toString());
+        }
+    }
+
+    /** Converts the table if needed, creates upcoming partitions and drops expired ones. */
+    public void maintain() {
+        tx.executeWithoutResult(status -> {
+            // several instances may run this at once
+            jdbc.queryForObject("SELECT pg_advisory_xact_lock(hashtext(?))", Object.class, TABLE + ".partitions");
+
+            String kind = relkind(TABLE);
+            if (kind == null) {
+                log.warn("{} does not exist, skipping partition maintenance", TABLE);
+                return;
+            }
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            if (!"p".equals(kind)) convert(today);
+
+            for (Range r : upcoming(today)) ensurePartition(r);
+            if (retentionDays > 0) dropExpired(today.minusDays(retentionDays));
+        });
+    }
+
+    // ====== conversion of the plain table ======
+
+    private void convert(LocalDate today) {
+        long t0 = System.nanoTime();
+        String legacy = TABLE + "_unpartitioned";
+        jdbc.execute("ALTER TABLE " + TABLE + " RENAME TO " + legacy);
+        // its indexes keep their names; free them for the partitioned table
+        jdbc.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT IF EXISTS " + TABLE + "_pkey");
+        jdbc.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT IF EXISTS " + UNIQUE_KEY);
+        // same column types as Hibernate created; id gets a plain sequence (identity needs PG 17 on partitioned tables)
+        jdbc.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+        jdbc.execute("CREATE TABLE " + TABLE + " (LIKE " + legacy + ") PARTITION BY RANGE (window_start_utc)");
+        jdbc.execute("ALTER TABLE " + TABLE + " ALTER COLUMN id SET DEFAULT nextval('" + SEQUENCE + "')");
+        jdbc.execute("ALTER SEQUENCE " + SEQUENCE + " OWNED BY " + TABLE + ".id");
+        // a unique key on a partitioned table must contain the partition column
+        jdbc.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, window_start_utc)");
+        jdbc.execute("ALTER TABLE " + TABLE
+                + " ADD CONSTRAINT " + UNIQUE_KEY + " UNIQUE (device_id, window_start_utc, window_minutes)");
+        jdbc.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+        List<Range> ranges = new ArrayList<>();
+        LocalDate oldest = jdbc.queryForObject(
+                "SELECT (min(window_start_utc) AT TIME ZONE 'UTC')::date FROM " + legacy, LocalDate.class);
+        if (oldest != null) {
+            LocalDate from = oldest;
+            if (retentionDays > 0) from = max(from, today.minusDays(retentionDays));
+            ranges.addAll(between(from, today));
+        }
+        ranges.addAll(upcoming(today));
+        for (Range r : ranges) ensurePartition(r);
+
+        int rows = jdbc.update("INSERT INTO " + TABLE + " SELECT * FROM " + legacy);
+        if (retentionDays > 0) {
+            Long expired = jdbc.queryForObject("SELECT count(*) FROM " + DEFAULT_PARTITION
+                    + " WHERE window_start_utc < ?", Long.class, today.minusDays(retentionDays).atStartOfDay().atOffset(ZoneOffset.UTC));
+            if (expired != null && expired > 0) {
+                log.warn("{} rows of {} are older than the {} day retention; kept in {} (delete them by hand if unwanted)",
+                        expired, TABLE, retentionDays, DEFAULT_PARTITION);
+            }
+        }
+        jdbc.queryForObject("SELECT setval('" + SEQUENCE + "', GREATEST((SELECT max(id) FROM " + TABLE + "), 0) + 1, false)",
+                Long.class);
+        jdbc.execute("DROP TABLE " + legacy);
+        log.info("Converted {} to {} partitions: {} rows copied in {} ms",
+                TABLE, granularity.name().toLowerCase(Locale.ROOT), rows, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // ====== partitions ======
+
+    /** The current partition and {@code premake} after it. */
+    List<Range> upcoming(LocalDate today) {
+        LocalDate start = granularity.floor(today);
+        LocalDate end = start;
+        for (int i = 0; i <= premake; i++) end = granularity.next(end);
+        return between(start, end.minusDays(1));
+    }
+
+    /** Partitions covering the days [first, last]. */
+    List<Range> between(LocalDate first, LocalDate last) {
+        List<Range> out = new ArrayList<>();
+        for (LocalDate s = granularity.floor(first); !s.isAfter(last); s = granularity.next(s)) {
+            out.add(new Range(granularity.name(s), s, granularity.next(s)));
+        }
+        return out;
+    }
+
+    private void ensurePartition(Range r) {
+        if (relkind(r.name()) != null) return;
+        String bounds = " FOR VALUES FROM ('" + r.start() + " 00:00:00+00') TO ('" + r.end() + " 00:00:00+00')";
+        String inRange = " WHERE window_start_utc >= '" + r.start() + " 00:00:00+00' AND window_start_utc < '"
+                + r.end() + " 00:00:00+00'";
+
+        Boolean parked = jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + inRange + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(parked)) {
+            jdbc.execute("CREATE TABLE " + r.name() + " PARTITION OF " + TABLE + bounds);
+            return;
+        }
+        // rows already in DEFAULT for this range: Postgres refuses the new partition until they move out
+        jdbc.execute("CREATE TABLE " + r.name() + " (LIKE " + TABLE + " INCLUDING DEFAULTS)");
+        int moved = jdbc.update("WITH m AS (DELETE FROM " + DEFAULT_PARTITION + inRange + " RETURNING *) "
+                + "INSERT INTO " + r.name() + " SELECT * FROM m");
+        jdbc.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + r.name() + bounds);
+        log.info("Created partition {} with {} rows moved from {}", r.name(), moved, DEFAULT_PARTITION);
+    }
+
+    /**
+     * Drops partitions that end on or before {@code keepFrom}. The end is read from each partition's bound
+     * rather than its name, so partitions made under another granularity expire too; the DEFAULT partition
+     * (and any bounded by MAXVALUE) has no end and is never dropped.
+     */
+    private void dropExpired(LocalDate keepFrom) {
+        // the bound is rendered in this session's time zone and date style, and cast back in the same session
+        List<String> partitions = jdbc.queryForList("""
+                SELECT c.relname
+                  FROM pg_inherits i
+                  JOIN pg_class c ON c.oid = i.inhrelid
+                 WHERE i.inhparent = ?::regclass
+                   AND substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \\(''([^'']+)''\\)')::timestamptz <= ?
+                """, String.class, TABLE, keepFrom.atStartOfDay().atOffset(ZoneOffset.UTC));
+        for (String name : partitions) {
+            jdbc.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            jdbc.execute("DROP TABLE " + name);
+            log.info("Dropped partition {} (retention {} days)", name, retentionDays);
+        }
+    }
+
+    /** pg_class.relkind of {@code name} in the current schema ('r' table, 'p' partitioned), null if absent. */
+    private String relkind(String name) {
+        List<String> kinds = jdbc.queryForList("""
+                SELECT c.relkind::text
+                  FROM pg_class c
+                  JOIN pg_namespace n ON n.oid = c.relnamespace
+                 WHERE c.relname = ? AND n.nspname = current_schema()
+                """, String.class, name);
+        return kinds.isEmpty() ? null : kinds.get(0);
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,129 @@
+package distributedSystem.Monitoring.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import distributedSystem.Monitoring.model.DeviceReading;
+import distributedSystem.Monitoring.model.ParsedReading;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceReadingParserTest {
+
+    private static final String SIMULATOR_PAYLOAD =
+            "{\"device_id\":\"device-001\",\"timestamp\":\"2025-11-03T10:15:00Z\",\"value_kwh\":0.4312345678912345}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DeviceReadingParser parser = new DeviceReadingParser(mapper);
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void parsesSimulatorPayloadOnFastPath() {
+        ParsedReading r = new ParsedReading();
+        assertTrue(DeviceReadingParser.parseFast(bytes(SIMULATOR_PAYLOAD), r));
+        assertEquals("device-001", r.deviceId());
+        assertEquals("2025-11-03T10:15:00Z", r.timestamp());
+        assertEquals(0.4312345678912345, r.valueKwh());
+    }
+
+    @Test
+    void toleratesReorderedKeysWhitespaceAndUnknownFields() {
+        ParsedReading r = new ParsedReading();
+        String json = " { \"value_kwh\" : -1.5e-3 , \"extra\":\"a\\\"b\", \"n\":null,"
+                + "\"timestamp\":\"2025-01-01T00:00:00.250Z\", \"device_id\" : \"device-7\" } ";
+        assertTrue(DeviceReadingParser.parseFast(bytes(json), r));
+        assertEquals("device-7", r.deviceId());
+        assertEquals("2025-01-01T00:00:00.250Z", r.timestamp());
+        assertEquals(-1.5e-3, r.valueKwh());
+    }
+
+    @Test
+    void numbersMatchDoubleParseDouble() {
+        String[] samples = {"0", "12", "0.1", "0.30000000000000004", "123456.789", "1E5", "9007199254740993",
+                "4.9e-324", "1.7976931348623157e308", "2.2250738585072014E-308"};
+        for (String s : samples) {
+            byte[] b = bytes(s);
+            assertEquals(Double.parseDouble(s), DeviceReadingParser.parseDouble(b, 0, b.length), s);
+        }
+    }
+
+    @Test
+    void timestampsDecodeToSameMillisAsInstantParse() {
+        String[] samples = {"2025-11-03T10:15:00Z", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.999Z",
+                "2024-02-29T12:00:00.5Z", "2000-03-01T00:00:00.123456Z", "2099-12-31T23:59:59.123456789Z"};
+        for (String s : samples) {
+            byte[] b = bytes(s);
+            assertEquals(Instant.parse(s).toEpochMilli(), IsoInstantDecoder.decodeEpochMillis(b, 0, b.length), s);
+        }
+        for (String bad : new String[]{"2025-02-29T00:00:00Z", "2025-11-03T24:00:00Z", "2025-11-03T10:15:00+01:00",
+                "2025-11-03 10:15:00Z", "2025-11-03T10:15:00.Z"}) {
+            byte[] b = bytes(bad);
+            assertEquals(IsoInstantDecoder.INVALID, IsoInstantDecoder.decodeEpochMillis(b, 0, b.length), bad);
+        }
+    }
+
+    @Test
+    void unexpectedShapesFallBackToJackson() throws Exception {
+        ParsedReading r = new ParsedReading();
+        String escaped = "{\"device_id\":\"device\\u002d002\",\"timestamp\":\"2025-01-01T00:00:00Z\",\"value_kwh\":2}";
+        assertFalse(DeviceReadingParser.parseFast(bytes(escaped), r));
+        assertTrue(parser.parse(bytes(escaped), r));
+        assertEquals("device-002", r.deviceId());
+        assertEquals(2.0, r.valueKwh());
+
+        String nested = "{\"meta\":{\"a\":1},\"device_id\":\"device-3\",\"timestamp\":\"2025-01-01T00:00:00Z\",\"value_kwh\":1}";
+        assertTrue(parser.parse(bytes(nested), r));
+        assertEquals("device-3", r.deviceId());
+
+        assertFalse(parser.parse(bytes("not json"), r));
+        assertFalse(parser.parse(null, r));
+    }
+
+    /**
+     * Allocation benchmark: String + trim + ObjectMapper.readValue (old path) versus the byte parser.
+     * Prints bytes allocated per message on the current thread.
+     */
+    @Test
+    void allocationsPerMessage() throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        byte[] payload = bytes(SIMULATOR_PAYLOAD);
+        ParsedReading r = new ParsedReading();
+        int n = 200_000;
+        double sink = 0;
+
+        for (int i = 0; i < n; i++) {   // warm-up both paths
+            sink += mapper.readValue(new String(payload, StandardCharsets.UTF_8).trim(), DeviceReading.class).value_kwh();
+            parser.parse(payload, r);
+            sink += r.valueKwh();
+        }
+
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < n; i++) {
+            sink += mapper.readValue(new String(payload, StandardCharsets.UTF_8).trim(), DeviceReading.class).value_kwh();
+        }
+        long jacksonBytes = threads.getThreadAllocatedBytes(tid) - before;
+
+        before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < n; i++) {
+            parser.parse(payload, r);
+            sink += r.valueKwh();
+        }
+        long fastBytes = threads.getThreadAllocatedBytes(tid) - before;
+
+        double jacksonPerMsg = jacksonBytes / (double) n;
+        double fastPerMsg = fastBytes / (double) n;
+        System.out.printf("DeviceReading parse allocations: jackson=%.1f B/msg, bytes=%.1f B/msg (sink=%.1f)%n",
+                jacksonPerMsg, fastPerMsg, sink);
+
+        assertTrue(fastPerMsg < 8.0, "fast path should not allocate per message, got " + fastPerMsg);
+        assertTrue(fastPerMsg * 10 < jacksonPerMsg);
+    }
+}
@@ -0,0 +1,73 @@
+package distributedSystem.Monitoring.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestBackpressureTest {
+
+    private static final double HEAP_OK = 0.3;
+
+    private static IngestBackpressure backpressure() {
+        // pause/resume: 500k/100k pending deltas, 85%/70% heap, 10s/2s flush; heap pauses end after 60 s
+        return new IngestBackpressure(null, null, true, 500_000, 100_000, 0.85, 0.70, 10_000, 2_000, 60);
+    }
+
+    @Test
+    void pausesOnBacklogAndResumesOnlyBelowTheLowerThreshold() {
+        IngestBackpressure bp = backpressure();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        bp.bindTo(meters);
+
+        assertFalse(bp.update(0, 400_000, HEAP_OK, 500));
+        assertTrue(bp.update(0, 600_000, HEAP_OK, 500), "pending over the pause threshold");
+        assertTrue(bp.update(0, 300_000, HEAP_OK, 500), "draining, still above resume");
+        assertFalse(bp.update(0, 50_000, HEAP_OK, 500), "below resume");
+
+        assertEquals(1, meters.get("monitoring.ingest.backpressure").tag("event", "pause").tag("reason", "pending")
+                .functionCounter().count());
+        assertEquals(1, meters.get("monitoring.ingest.backpressure").tag("event", "resume")
+                .functionCounter().count());
+    }
+
+    @Test
+    void slowWritePauseEndsOnceTheBacklogDrains() {
+        IngestBackpressure bp = backpressure();
+
+        assertTrue(bp.update(0, 20_000, HEAP_OK, 15_000), "slow flush with deltas waiting");
+        assertTrue(bp.update(0, 20_000, HEAP_OK, 12_000), "still writing slowly");
+        // drained: nothing more is written, so the average stays where the last slow write left it
+        assertFalse(bp.update(0, 0, HEAP_OK, 12_000), "frozen write time must not hold ingest");
+        assertFalse(bp.update(0, 0, HEAP_OK, 12_000), "and must not pause it again");
+    }
+
+    @Test
+    void heapPauseHasHysteresis() {
+        IngestBackpressure bp = backpressure();
+
+        assertTrue(bp.update(0, 0, 0.90, 0));
+        assertTrue(bp.update(0, 0, 0.80, 0), "between resume and pause");
+        assertFalse(bp.update(0, 0, 0.60, 0));
+    }
+
+    @Test
+    void heapPauseEndsWhenPausingCannotFreeTheHeap() {
+        IngestBackpressure bp = backpressure();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        bp.bindTo(meters);
+
+        assertTrue(bp.update(0, 0, 0.90, 0));
+        // backlog drained, but the open windows only close when readings move the watermark
+        assertTrue(bp.update(59_000, 0, 0.90, 0), "within pause.max-heap-seconds");
+        assertFalse(bp.update(60_000, 0, 0.90, 0), "heap alone holds it past the limit");
+        assertFalse(bp.update(61_000, 0, 0.95, 0), "heap signal disarmed while still high");
+        assertTrue(bp.update(62_000, 600_000, 0.95, 0), "other signals still pause");
+        assertFalse(bp.update(63_000, 0, 0.95, 0), "and their pause is not held by the disarmed heap");
+
+        assertFalse(bp.update(64_000, 0, 0.60, 0), "heap recovered: rearmed");
+        assertTrue(bp.update(65_000, 0, 0.90, 0), "and pauses again");
+        assertEquals(1, meters.get("monitoring.ingest.backpressure").tag("event", "resume").tag("reason", "heap_timeout")
+                .functionCounter().count());
+    }
+}
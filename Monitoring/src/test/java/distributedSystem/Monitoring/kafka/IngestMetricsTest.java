@@ -0,0 +1,45 @@
+package distributedSystem.Monitoring.kafka;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestMetricsTest {
+
+    @Test
+    void countsRecordsPerPartitionWithOneMeterEach() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry);
+
+        for (int i = 0; i < 1000; i++) metrics.recordConsumed(i % 3, 1);
+        metrics.recordConsumed(7, 250);
+        metrics.recordConsumed(1, 10);
+
+        assertEquals(4, registry.find("monitoring.ingest.records").functionCounters().size());
+        assertEquals(334, count(registry, "0"));
+        assertEquals(343, count(registry, "1"));
+        assertEquals(333, count(registry, "2"));
+        assertEquals(250, count(registry, "7"));
+    }
+
+    @Test
+    void recordsParseTime() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry);
+
+        metrics.recordParse(1_500);
+        metrics.recordParse(500);
+
+        assertEquals(2, registry.get("monitoring.ingest.parse").timer().count());
+        assertEquals(2_000, registry.get("monitoring.ingest.parse").timer().totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    private static double count(SimpleMeterRegistry registry, String partition) {
+        FunctionCounter c = registry.get("monitoring.ingest.records").tag("partition", partition).functionCounter();
+        return c.count();
+    }
+}
@@ -0,0 +1,160 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BucketStoreBenchmarkTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "packed"})
+    void storesBehaveTheSame(String kind) {
+        BucketStore store = BucketStore.create(kind, 16);
+
+        assertEquals(1.5, store.add(7, 100, 1.5, 1));
+        assertEquals(4.0, store.add(7, 100, 2.5, 2));
+        store.add(7, 101, 1.0, 1);
+        store.add(1_000_000, 100, 3.0, 1);
+        assertEquals(3, store.size());
+
+        assertTrue(store.markAlerted(7, 100));
+        assertFalse(store.markAlerted(7, 100));
+        assertTrue(Double.isNaN(store.add(7, 100, 1.0, 1)));
+
+        Map<String, double[]> drained = new HashMap<>();
+        assertEquals(3, store.drainPending((d, w, kwh, n) -> drained.put(d + "@" + w, new double[]{kwh, n})));
+        assertArrayEquals(new double[]{5.0, 4}, drained.get("7@100"));
+        assertEquals(0, store.drainPending((d, w, kwh, n) -> fail("pending deltas were not reset")));
+
+        assertEquals(2, store.evictBefore(101));
+        assertEquals(1, store.size());
+        assertEquals(2.0, store.add(7, 101, 1.0, 1)); // totals survive a drain
+    }
+
+    @Test
+    void packedStoreGrowsPastInitialCapacity() {
+        BucketStore store = BucketStore.create("packed", 16);
+        for (long d = 0; d < 10_000; d++) store.add(d, 5, 1.0, 1);
+        for (long d = 0; d < 10_000; d++) assertEquals(2.0, store.add(d, 5, 1.0, 1));
+        assertEquals(10_000, store.size());
+    }
+
+    @Test
+    void kindsTellWhichDeviceIdsTheyCanKey() {
+        long beyondInt = Integer.MAX_VALUE + 1L;   // DeviceIdCodec parses up to 18 digits
+        assertTrue(BucketStore.Kind.of("packed").accepts(Integer.MAX_VALUE));
+        assertFalse(BucketStore.Kind.of("packed").accepts(beyondInt));
+        assertThrows(IllegalArgumentException.class, () -> BucketStore.create("packed", 16).add(beyondInt, 5, 1.0, 1));
+
+        assertTrue(BucketStore.Kind.of(" Object ").accepts(beyondInt));
+        assertFalse(BucketStore.Kind.of("object").accepts(-1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "packed"})
+    void drainOnlyVisitsDirtyBucketsAndSurvivesGrowth(String kind) {
+        BucketStore store = BucketStore.create(kind, 16);
+        for (long d = 0; d < 1_000; d++) store.add(d, 5, 1.0, 1);
+        store.drainPending((d, w, kwh, n) -> {});
+
+        store.add(3, 5, 2.0, 1);
+        for (long d = 1_000; d < 5_000; d++) store.add(d, 6, 1.0, 1); // forces rehash of the packed table
+        store.add(3, 5, 1.0, 1);
+
+        SealedDeltas sealed = new SealedDeltas(0, 0);
+        assertEquals(4_001, store.drainPending(sealed));
+        assertEquals(4_001, sealed.size());
+    }
+
+    @Test
+    void mergeSortsAndSumsDuplicateKeys() {
+        SealedDeltas a = new SealedDeltas(0, 0), b = new SealedDeltas(1, 0);
+        a.accept(9, 2, 1.0, 1);
+        a.accept(4, 7, 2.0, 2);
+        b.accept(9, 2, 0.5, 1);
+        b.accept(4, 6, 3.0, 1);
+        for (int i = 100; i > 60; i--) b.accept(i, 1, 1.0, 1);
+
+        SealedDeltas m = new SealedDeltas(-1, 0).mergeFrom(List.of(a, b));
+        assertEquals(43, m.size());
+        assertEquals(4, m.deviceId(0));
+        assertEquals(6, m.windowIndex(0));
+        assertEquals(7, m.windowIndex(1));
+        assertEquals(9, m.deviceId(2));
+        assertEquals(1.5, m.kwh(2));
+        assertEquals(2, m.samples(2));
+        for (int i = 1; i < m.size(); i++) assertTrue(m.deviceId(i - 1) <= m.deviceId(i));
+    }
+
+    /**
+     * Footprint / GC comparison: fills each store with DEVICES x 2 windows, then replays
+     * several rounds of readings and flushes. Prints allocated bytes, retained heap and GC activity.
+     */
+    @Test
+    void footprintAndGcComparison() {
+        final int devices = 250_000;
+        Result object = run("object", devices);
+        Result packed = run("packed", devices);
+
+        System.out.printf("BucketStore %d buckets | object: alloc=%d MB retained~%d MB gc=%d (%d ms) | "
+                        + "packed: alloc=%d MB retained~%d MB gc=%d (%d ms)%n",
+                devices * 2,
+                object.allocated >> 20, object.retained >> 20, object.gcCount, object.gcMillis,
+                packed.allocated >> 20, packed.retained >> 20, packed.gcCount, packed.gcMillis);
+
+        assertTrue(packed.allocated < object.allocated / 4,
+                "packed store should allocate far less than one object per bucket");
+    }
+
+    private record Result(long allocated, long retained, long gcCount, long gcMillis) {}
+
+    private static Result run(String kind, int devices) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        long heapBefore = usedHeapAfterGc();
+        long gcCountBefore = gcCount(), gcTimeBefore = gcMillis();
+        long allocBefore = threads.getThreadAllocatedBytes(tid);
+
+        BucketStore store = BucketStore.create(kind, devices * 2);
+        double[] sink = new double[1];
+        for (int round = 0; round < 10; round++) {
+            for (long d = 0; d < devices; d++) {
+                store.add(d, 1_000, 0.25, 1);
+                store.add(d, 1_001, 0.25, 1);
+            }
+            store.drainPending((d, w, kwh, n) -> sink[0] += kwh);
+        }
+
+        long allocated = threads.getThreadAllocatedBytes(tid) - allocBefore;
+        long gcCount = gcCount() - gcCountBefore, gcMs = gcMillis() - gcTimeBefore;
+        long retained = usedHeapAfterGc() - heapBefore;
+        assertEquals(devices * 2, store.size()); // also keeps the store reachable for the heap reading
+        assertEquals(devices * 2 * 10 * 0.25, sink[0], 1e-6);
+        return new Result(allocated, retained, gcCount, gcMs);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,50 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsumptionHistoryServiceTest {
+
+    private final ConsumptionHistoryService service = new ConsumptionHistoryService(null, null, rollups(true));
+
+    private static RollupWriter rollups(boolean backfilled) {
+        RollupWriter rollups = new RollupWriter(null, null, null, true, 1000);
+        if (backfilled) rollups.markBackfilled();
+        return rollups;
+    }
+
+    @Test
+    void picksCoarsestResolutionThatTilesRangeAndStep() {
+        Instant jan = Instant.parse("2025-01-01T00:00:00Z");
+        Instant apr = Instant.parse("2025-04-01T00:00:00Z");
+        Instant jan3 = Instant.parse("2025-01-03T00:00:00Z");
+        Instant jan3h5 = Instant.parse("2025-01-03T05:00:00Z");
+
+        assertEquals(RollupResolution.MONTH, service.resolutionFor(jan, apr, HistoryStep.parse("1mo")));
+        assertEquals(RollupResolution.DAY, service.resolutionFor(jan, apr, HistoryStep.parse("7d")));
+        assertEquals(RollupResolution.DAY, service.resolutionFor(jan3, apr, HistoryStep.parse("1mo")));
+        assertEquals(RollupResolution.HOUR, service.resolutionFor(jan3h5, apr, HistoryStep.parse("1d")));
+        assertEquals(RollupResolution.RAW, service.resolutionFor(jan, apr, HistoryStep.parse("15m")));
+        assertEquals(RollupResolution.RAW, service.resolutionFor(jan3h5.plusSeconds(60), apr, HistoryStep.parse("1h")));
+
+        ConsumptionHistoryService beforeBackfill = new ConsumptionHistoryService(null, null, rollups(false));
+        assertEquals(RollupResolution.RAW, beforeBackfill.resolutionFor(jan, apr, HistoryStep.parse("1mo")),
+                "rollups without the history from before they existed");
+    }
+
+    @Test
+    void stepsBucketByCalendarMonthOrFixedLength() {
+        Instant jan31 = Instant.parse("2025-01-31T00:00:00Z");
+        HistoryStep month = HistoryStep.parse("1mo");
+        assertEquals(1, month.indexOf(jan31, Instant.parse("2025-02-28T00:00:00Z")));
+        assertEquals(Instant.parse("2025-02-28T00:00:00Z"), month.start(jan31, 1));
+
+        HistoryStep sixHours = HistoryStep.parse("6h");
+        assertEquals(3, sixHours.indexOf(jan31, Instant.parse("2025-01-31T23:59:00Z")));
+        assertThrows(IllegalArgumentException.class, () -> HistoryStep.parse("0h"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryStep.parse("1w"));
+    }
+}
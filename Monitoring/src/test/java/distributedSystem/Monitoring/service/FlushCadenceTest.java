@@ -0,0 +1,32 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlushCadenceTest {
+
+    @Test
+    void fastDatabaseKeepsBaseIntervalAndAllowsEarlyFlushes() {
+        FlushCadence cadence = new FlushCadence(5_000, 500, 60_000);
+        for (int i = 0; i < 10; i++) cadence.recordWrite(40);
+
+        assertEquals(5_000, cadence.nextMillis());
+        assertEquals(500, cadence.floorMillis());
+    }
+
+    @Test
+    void slowWritesStretchTheCadenceUpToTheMaximumAndRecover() {
+        FlushCadence cadence = new FlushCadence(5_000, 500, 60_000);
+        for (int i = 0; i < 30; i++) cadence.recordWrite(8_000);
+
+        assertEquals(16_000, cadence.floorMillis(), 1, "writer kept to half of the wall time");
+        assertEquals(cadence.floorMillis(), cadence.nextMillis());
+
+        for (int i = 0; i < 30; i++) cadence.recordWrite(90_000);
+        assertEquals(60_000, cadence.nextMillis());
+
+        for (int i = 0; i < 60; i++) cadence.recordWrite(50);
+        assertEquals(5_000, cadence.nextMillis());
+    }
+}
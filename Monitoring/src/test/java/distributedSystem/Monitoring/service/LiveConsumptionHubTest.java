@@ -0,0 +1,77 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveConsumptionHubTest {
+
+    private static final long STUCK = 1, HEALTHY = 2;
+
+    @Test
+    void stuckSubscriberIsDroppedWithoutStallingTheOthers() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch stuckSending = new CountDownLatch(1);
+        CountDownLatch healthyGotEvent = new CountDownLatch(1);
+        Object writeLock = new Object();   // stands in for ResponseBodyEmitter's, shared by send and complete
+
+        // 100 events/s, 100 ms max send
+        LiveConsumptionHub hub = new LiveConsumptionHub(null, new DeviceIdCodec("device-", 3, 0),
+                60, 100, 100, 10_000, 4, 30) {
+            private int created;
+
+            @Override
+            SseEmitter newEmitter(long timeoutMs) {
+                boolean stuck = created++ == 0;
+                return new SseEmitter(timeoutMs) {
+                    @Override
+                    public void send(SseEventBuilder event) {
+                        if (!stuck) {
+                            // keepalives go out on the first tick regardless; wait for a window batch
+                            if (event.build().stream().anyMatch(d -> String.valueOf(d.getData()).contains("event:windows"))) {
+                                healthyGotEvent.countDown();
+                            }
+                            return;
+                        }
+                        synchronized (writeLock) {
+                            stuckSending.countDown();
+                            try {
+                                unblock.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void completeWithError(Throwable ex) {
+                        synchronized (writeLock) {
+                            super.completeWithError(ex);
+                        }
+                    }
+                };
+            }
+        };
+        try {
+            hub.subscribeDevice("device-001");
+            hub.subscribeDevice("device-002");
+            hub.offer(STUCK, 0, 1.0, 1.0, 1);
+            assertTrue(stuckSending.await(2, TimeUnit.SECONDS));
+
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (hub.subscriptions() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(1, hub.subscriptions(), "the stuck subscriber is dropped");
+
+            hub.offer(HEALTHY, 0, 2.0, 2.0, 1);
+            assertTrue(healthyGotEvent.await(2, TimeUnit.SECONDS), "the other subscriber still gets its events");
+        } finally {
+            unblock.countDown();
+            hub.stop();
+        }
+    }
+}
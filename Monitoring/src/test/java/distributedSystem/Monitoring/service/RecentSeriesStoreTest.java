@@ -0,0 +1,236 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentSeriesStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 86_400_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void gorillaStreamRoundTripsIrregularTimestampsAndValues() {
+        Random rnd = new Random(7);
+        GorillaStream g = new GorillaStream();
+        long[] ts = new long[5_000];
+        double[] v = new double[ts.length];
+        long t = 29_000_000;
+        for (int i = 0; i < ts.length; i++) {
+            t += switch (i % 7) {
+                case 3 -> 1 + rnd.nextInt(50);       // short gap
+                case 5 -> 1 + rnd.nextInt(5_000);    // long gap
+                default -> 1;
+            };
+            ts[i] = t;
+            v[i] = i % 4 == 0 ? v[Math.max(0, i - 1)] : Math.round(rnd.nextDouble() * 5_000) / 1000.0;
+            g.append(ts[i], v[i]);
+        }
+
+        GorillaStream.Reader r = g.reader();
+        for (int i = 0; i < ts.length; i++) {
+            assertTrue(r.next());
+            assertEquals(ts[i], r.ts());
+            assertEquals(v[i], r.value());
+        }
+        assertFalse(r.next());
+
+        GorillaStream resumed = GorillaStream.resume(g.words().clone(), g.bitLength(), g.count());
+        resumed.append(t + 1, 0.5);
+        GorillaStream.Reader r2 = resumed.reader();
+        for (int i = 0; i <= ts.length; i++) assertTrue(r2.next());
+        assertEquals(t + 1, r2.ts());
+        assertEquals(0.5, r2.value());
+    }
+
+    @Test
+    void servesOnlyCoveredRangesAndSurvivesACleanRestart() {
+        long base = LocalDate.of(2026, 10, 10).toEpochDay() * DAY;
+        AtomicLong now = new AtomicLong(base - 30_000);
+        RecentSeriesStore store = new RecentSeriesStore(true, dir.toString(), 7, 1, now::get);
+        store.claim(0, 0L);
+
+        long offset = feed(store, now, base, 3, 1440 + 120, 0);   // a full day plus two hours, 1 kWh per window
+        store.append(List.of(delta(0, 1, base / MINUTE + 10, 0.5, offset)));  // late reading for a sealed day
+
+        RecentSeriesStore.Series day0 = store.read(1, base, base + DAY);
+        assertNotNull(day0);
+        assertEquals(1440, day0.size());
+        assertEquals(base + 10 * MINUTE, day0.startMillis()[10]);
+        assertEquals(1.5, day0.kwh()[10]);
+        assertEquals(1440 - 1 + 1.5, sum(day0), 1e-9);
+
+        RecentSeriesStore.Series today = store.read(1, base + DAY, base + 2 * DAY);
+        assertEquals(120, today.size(), "open day stream plus uncompressed tail");
+
+        assertNull(store.read(1, base - MINUTE, base + DAY), "starts before the partition was covered");
+        assertNull(store.read(99, base, base + DAY), "device not consumed here");
+        long owned = store.ownership(1);
+        assertTrue(owned >= 0);
+        assertEquals(-1, store.ownership(99));
+        store.release(0);
+        assertNull(store.read(1, base, base + DAY), "partition no longer owned");
+        assertEquals(-1, store.ownership(1));
+        store.claim(0, offset);
+        assertNotEquals(owned, store.ownership(1), "owned again, but changes may have been written elsewhere");
+        store.release(0);
+        store.close();
+
+        RecentSeriesStore restarted = new RecentSeriesStore(true, dir.toString(), 7, 1, now::get);
+        restarted.load();
+        restarted.claim(0, offset);
+        assertEquals(1440 - 1 + 1.5, sum(restarted.read(1, base, base + DAY)), 1e-9);
+        assertEquals(120, restarted.read(1, base + DAY, base + 2 * DAY).size());
+        restarted.close();
+
+        RecentSeriesStore moved = new RecentSeriesStore(true, dir.toString(), 7, 1, now::get);
+        moved.load();
+        moved.claim(0, offset + 10);   // someone else consumed in between
+        assertNull(moved.read(1, base, base + DAY));
+    }
+
+    @Test
+    void compressesAndRetiresByEventTimeWhenItRunsAheadOfTheWallClock() throws IOException {
+        long base = LocalDate.of(2026, 10, 10).toEpochDay() * DAY;
+        AtomicLong now = new AtomicLong(base - 30_000);
+        RecentSeriesStore store = new RecentSeriesStore(true, dir.toString(), 1, 1, now::get);
+        store.claim(0, 0L);
+
+        long offset = 0;
+        for (int m = 0; m < 3 * 1440; m += 5) {        // three days of event time, wall clock standing still
+            SealedDeltas b = new SealedDeltas(0, 5);
+            for (int k = m; k < m + 5; k++) b.accept(1, base / MINUTE + k, 1.0, 1);
+            b.nextOffset(offset += 5);
+            b.closedBefore(base / MINUTE + m + 5 - 2);
+            store.append(List.of(b));
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.filter(f -> SeriesSegment.epochDayOf(f) != null).count(),
+                    "both closed days written, then retired (one day retained)");
+        }
+        assertNull(store.read(1, base, base + DAY), "past retention on the event-time horizon");
+        assertEquals(1440, store.read(1, base + 2 * DAY, base + 3 * DAY).size());
+    }
+
+    @Test
+    void compressesDevicesThatLaterFlushesNoLongerTouch() throws IOException {
+        long base = LocalDate.of(2026, 10, 10).toEpochDay() * DAY;
+        AtomicLong now = new AtomicLong(base - 30_000);
+        RecentSeriesStore store = new RecentSeriesStore(true, dir.toString(), 7, 1, now::get);
+        store.claim(0, 0L);
+
+        SealedDeltas early = new SealedDeltas(0, 1440);
+        for (int k = 0; k < 1440; k++) early.accept(1, base / MINUTE + k, 1.0, 1);
+        early.nextOffset(1440);
+        early.closedBefore(base / MINUTE);   // nothing closed yet
+        store.append(List.of(early));
+
+        // only device 2 from here on; its partition's horizon passes device 1's day
+        long offset = 1440;
+        for (int m = 1440; m < 2 * 1440 + 60; m += 5) {
+            SealedDeltas b = new SealedDeltas(0, 5);
+            for (int k = m; k < m + 5; k++) b.accept(2, base / MINUTE + k, 2.0, 1);
+            b.nextOffset(offset += 5);
+            b.closedBefore(base / MINUTE + m + 5 - 2);
+            store.append(List.of(b));
+        }
+
+        SeriesSegment day0 = SeriesSegment.open(SeriesSegment.fileFor(dir, base / DAY));
+        GorillaStream.Reader r = day0.reader(1);
+        assertNotNull(r, "device 1 written to its closed day");
+        int windows = 0;
+        while (r.next()) windows++;
+        assertEquals(1440, windows);
+        assertEquals(1440, sum(store.read(1, base, base + DAY)), 1e-9);
+    }
+
+    /**
+     * 2,000 devices x 2 days of 1-minute windows with meter-like values (3 decimals): bytes per window
+     * in the day segments against Postgres (window_consumption row + unique index entry, ~115 bytes),
+     * and the time to read one device-day.
+     */
+    @Test
+    void compressionAndReadLatency() throws IOException {
+        final int devices = 2_000, minutes = 2 * 1440 + 30;
+        long base = LocalDate.of(2026, 10, 10).toEpochDay() * DAY;
+        AtomicLong now = new AtomicLong(base - 30_000);
+        RecentSeriesStore store = new RecentSeriesStore(true, dir.toString(), 7, 1, now::get);
+        store.claim(0, 0L);
+
+        Random rnd = new Random(11);
+        long offset = 0;
+        for (int m = 0; m < minutes; m += 5) {
+            SealedDeltas b = new SealedDeltas(0, devices * 5);
+            for (int k = m; k < m + 5; k++) {
+                for (long d = 0; d < devices; d++) b.accept(d, base / MINUTE + k, Math.round(rnd.nextDouble() * 2_000) / 1000.0, 6);
+            }
+            b.nextOffset(offset += devices * 5L);
+            b.closedBefore(base / MINUTE + m + 5 - 2);   // horizon two windows behind the newest
+            now.set(base + (m + 5) * MINUTE);
+            store.append(List.of(b));
+        }
+
+        long segmentBytes;
+        try (Stream<Path> files = Files.list(dir)) {
+            segmentBytes = files.filter(f -> SeriesSegment.epochDayOf(f) != null).mapToLong(f -> f.toFile().length()).sum();
+        }
+        double bytesPerWindow = segmentBytes / (2.0 * 1440 * devices);
+
+        int reads = 20_000;
+        long t0 = System.nanoTime();
+        long points = 0;
+        for (int i = 0; i < reads; i++) {
+            long day = base + (i & 1) * DAY;
+            points += store.read(i % devices, day, day + DAY).size();
+        }
+        double usPerRead = (System.nanoTime() - t0) / 1_000.0 / reads;
+
+        System.out.printf("RecentSeriesStore | %d devices x 2 days: %.2f bytes/window (raw 16, Postgres ~115, %.1fx smaller) "
+                + "| device-day read %.1f us%n", devices, bytesPerWindow, 115 / bytesPerWindow, usPerRead);
+
+        assertEquals((long) reads * 1440, points);
+        assertTrue(115 / bytesPerWindow >= 10, "at least 10x smaller than the table");
+    }
+
+    /** One delta per device and window, flushed every five windows; returns the last offset. */
+    private static long feed(RecentSeriesStore store, AtomicLong now, long base, int devices, int minutes, long offset) {
+        for (int m = 0; m < minutes; m += 5) {
+            SealedDeltas b = new SealedDeltas(0, devices * 5);
+            for (int k = m; k < Math.min(minutes, m + 5); k++) {
+                for (long d = 0; d < devices; d++) b.accept(d, base / MINUTE + k, 1.0, 1);
+            }
+            b.nextOffset(offset += devices * 5L);
+            b.closedBefore(base / MINUTE + m + 5 - 2);   // horizon two windows behind the newest
+            now.set(base + (m + 5) * MINUTE);
+            store.append(List.of(b));
+        }
+        return offset;
+    }
+
+    private static SealedDeltas delta(int partition, long device, long window, double kwh, long nextOffset) {
+        SealedDeltas b = new SealedDeltas(partition, 1);
+        b.accept(device, window, kwh, 1);
+        b.nextOffset(nextOffset);
+        return b;
+    }
+
+    private static double sum(RecentSeriesStore.Series s) {
+        double t = 0;
+        for (int i = 0; i < s.size(); i++) t += s.kwh()[i];
+        return t;
+    }
+}
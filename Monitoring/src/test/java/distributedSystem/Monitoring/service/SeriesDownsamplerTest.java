@@ -0,0 +1,78 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesDownsamplerTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final int N = 20_000;
+
+    private record Point(long ts, double value) {}
+
+    private static List<Point> run(SeriesDownsampler.Mode mode, int maxPoints, double[] values) throws IOException {
+        List<Point> out = new ArrayList<>();
+        SeriesDownsampler d = SeriesDownsampler.of(mode, maxPoints, 0, values.length * MINUTE,
+                (ts, value, samples) -> out.add(new Point(ts, value)));
+        for (int i = 0; i < values.length; i++) d.accept(i * MINUTE, values[i], 1);
+        d.finish();
+        return out;
+    }
+
+    /** Daily load curve with noise, one spike and one dip. */
+    private static double[] series() {
+        Random rnd = new Random(7);
+        double[] v = new double[N];
+        for (int i = 0; i < N; i++) v[i] = 1.0 + Math.sin(i * 2 * Math.PI / 1440) * 0.5 + rnd.nextDouble() * 0.1;
+        v[12_345] = 25.0;
+        v[4_321] = -3.0;
+        return v;
+    }
+
+    private static void assertOrderedOriginals(List<Point> out, double[] values) {
+        for (int i = 0; i < out.size(); i++) {
+            Point p = out.get(i);
+            assertEquals(values[(int) (p.ts() / MINUTE)], p.value(), "only original points are emitted");
+            if (i > 0) assertTrue(p.ts() > out.get(i - 1).ts(), "time order kept");
+        }
+    }
+
+    @Test
+    void lttbKeepsEndsAndPeaksWithinMaxPoints() throws IOException {
+        double[] values = series();
+        List<Point> out = run(SeriesDownsampler.Mode.LTTB, 300, values);
+
+        assertTrue(out.size() <= 300 && out.size() >= 290, "got " + out.size());
+        assertEquals(0, out.get(0).ts());
+        assertEquals((N - 1) * MINUTE, out.get(out.size() - 1).ts());
+        assertTrue(out.stream().anyMatch(p -> p.value() == 25.0), "spike survives");
+        assertTrue(out.stream().anyMatch(p -> p.value() == -3.0), "dip survives");
+        assertOrderedOriginals(out, values);
+    }
+
+    @Test
+    void minMaxEnvelopeKeepsEveryBucketExtreme() throws IOException {
+        double[] values = series();
+        List<Point> out = run(SeriesDownsampler.Mode.MINMAX, 300, values);
+
+        assertTrue(out.size() <= 300, "got " + out.size());
+        assertTrue(out.stream().anyMatch(p -> p.value() == 25.0));
+        assertTrue(out.stream().anyMatch(p -> p.value() == -3.0));
+        assertOrderedOriginals(out, values);
+    }
+
+    @Test
+    void shortSeriesPassThrough() throws IOException {
+        assertEquals(0, run(SeriesDownsampler.Mode.LTTB, 10, new double[0]).size());
+        assertEquals(1, run(SeriesDownsampler.Mode.LTTB, 10, new double[]{1}).size());
+        assertEquals(2, run(SeriesDownsampler.Mode.LTTB, 10, new double[]{1, 2}).size());
+        assertEquals(3, run(SeriesDownsampler.Mode.LTTB, 10, new double[]{1, 5, 2}).size());
+        assertEquals(2, run(SeriesDownsampler.Mode.MINMAX, 10, new double[]{1, 2}).size());
+    }
+}
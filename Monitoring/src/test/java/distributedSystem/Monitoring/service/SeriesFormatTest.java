@@ -0,0 +1,75 @@
+package distributedSystem.Monitoring.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesFormatTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY_START = 1_760_000_400_000L;   // 2025-10-09T09:00Z, minute aligned
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** A week of 1-minute windows with one gap, as a single series. */
+    private static WindowAggregator.DaySeries series() {
+        int n = 7 * 1440;
+        long[] ts = new long[n];
+        double[] kwh = new double[n];
+        for (int i = 0; i < n; i++) {
+            ts[i] = DAY_START + (i < 100 ? i : i + 5) * MINUTE;
+            kwh[i] = 0.01 + (i % 97) * 0.0013;
+        }
+        return new WindowAggregator.DaySeries("device-001", ZoneId.of("UTC"), DAY_START, MINUTE, 60, ts, kwh, n);
+    }
+
+    @Test
+    void acceptHeaderPicksFormatByQualityAndDefaultsToRows() {
+        assertEquals(SeriesFormat.ROWS, SeriesFormat.negotiate(null));
+        assertEquals(SeriesFormat.ROWS, SeriesFormat.negotiate("*/*"));
+        assertEquals(SeriesFormat.ROWS, SeriesFormat.negotiate("application/json"));
+        assertEquals(SeriesFormat.ROWS, SeriesFormat.negotiate("not a media type"));
+        assertEquals(SeriesFormat.COLUMNAR_JSON,
+                SeriesFormat.negotiate("application/vnd.monitoring.series.columnar+json, application/json;q=0.5"));
+        assertEquals(SeriesFormat.COLUMNAR_BINARY,
+                SeriesFormat.negotiate("application/json;q=0.8, application/vnd.monitoring.series.columnar"));
+        assertEquals(SeriesFormat.ROWS,
+                SeriesFormat.negotiate("application/vnd.monitoring.series.columnar;q=0.1, application/json"));
+    }
+
+    @Test
+    void columnarFormatsCarryTheSameWindowsAndAreSmaller() throws IOException {
+        WindowAggregator.DaySeries s = series();
+        byte[] rows = SeriesFormat.ROWS.encode(s, objectMapper);
+        byte[] columnar = SeriesFormat.COLUMNAR_JSON.encode(s, objectMapper);
+        byte[] binary = SeriesFormat.COLUMNAR_BINARY.encode(s, objectMapper);
+
+        JsonNode json = objectMapper.readTree(columnar);
+        long base = json.get("base_ms").asLong(), step = json.get("step_ms").asLong();
+        assertEquals(MINUTE, step);
+        ByteBuffer frame = ByteBuffer.wrap(binary).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('S', frame.get(0));
+        assertEquals(s.size(), frame.getInt(4));
+        assertEquals(base, frame.getLong(8));
+        assertEquals(step, frame.getLong(16));
+        int tAt = 24, kwhAt = 24 + 4 * s.size();
+        for (int i = 0; i < s.size(); i++) {
+            assertEquals(s.tsMillis()[i], base + json.get("t").get(i).asLong() * step);
+            assertEquals(s.kwh()[i], json.get("kwh").get(i).asDouble());
+            assertEquals(s.tsMillis()[i], base + frame.getInt(tAt + 4 * i) * step);
+            assertEquals(s.kwh()[i], frame.getDouble(kwhAt + 8 * i));
+        }
+
+        System.out.printf("series of %d windows: rows %d B, columnar json %d B (%.1fx), binary %d B (%.1fx)%n",
+                s.size(), rows.length, columnar.length, (double) rows.length / columnar.length,
+                binary.length, (double) rows.length / binary.length);
+        assertTrue(columnar.length * 3 < rows.length);
+        assertTrue(binary.length * 5 < rows.length);
+    }
+}
@@ -0,0 +1,49 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesVersionsTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 86_400_000L;
+
+    @Test
+    void flushInvalidatesOnlyTheDeviceDaysItTouched() {
+        SeriesVersions versions = new SeriesVersions();
+        long today = Math.floorDiv(System.currentTimeMillis(), DAY) * DAY;
+        long seen = versions.current();
+
+        SealedDeltas merged = new SealedDeltas(-1, 4);
+        merged.accept(7, today / MINUTE + 5, 1.0, 1);
+        merged.accept(7, today / MINUTE + 6, 1.0, 1);
+        merged.accept(8, (today - DAY) / MINUTE + 10, 1.0, 1);
+        versions.changed(merged, MINUTE);
+
+        assertFalse(versions.unchangedSince(7, today, today + DAY, seen));
+        assertTrue(versions.unchangedSince(7, today - DAY, today, seen), "yesterday of device 7 untouched");
+        assertFalse(versions.unchangedSince(8, today - DAY, today, seen));
+        assertTrue(versions.unchangedSince(9, today, today + DAY, seen));
+        // a local day spanning two UTC days sees changes in either
+        assertFalse(versions.unchangedSince(8, today - DAY / 2, today + DAY / 2, seen));
+
+        long after = versions.current();
+        assertTrue(versions.unchangedSince(7, today, today + DAY, after));
+    }
+
+    @Test
+    void daysOlderThanTrackedAreInvalidatedOnceWhenPruned() {
+        SeriesVersions versions = new SeriesVersions();
+        long today = Math.floorDiv(System.currentTimeMillis(), DAY) * DAY;
+        long old = today - (SeriesVersions.TRACKED_DAYS + 2) * DAY;
+        long seen = versions.current();
+
+        SealedDeltas merged = new SealedDeltas(-1, 1);
+        merged.accept(1, today / MINUTE, 1.0, 1);
+        versions.changed(merged, MINUTE);
+
+        assertFalse(versions.unchangedSince(2, old, old + DAY, seen));
+        assertTrue(versions.unchangedSince(2, old, old + DAY, versions.current()));
+    }
+}
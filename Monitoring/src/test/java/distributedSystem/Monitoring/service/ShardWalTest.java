@@ -0,0 +1,134 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardWalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversTotalsAndAlertsUpToConsumerPosition() throws IOException {
+        BucketStore live = BucketStore.create("packed", 16);
+        ShardWal wal = ShardWal.open(dir, 0, live, 0);
+
+        apply(live, wal, 1, 10, 1.0, 1);          // offset 0
+        live.markAlerted(1, 10);
+        wal.logAlert(1, 10);
+        wal.logOffset(1);
+        wal.snapshot(live, 1);
+
+        apply(live, wal, 1, 10, 2.0, 2);          // offset 1
+        wal.logOffset(2);
+        apply(live, wal, 2, 10, 5.0, 1);          // offset 2
+        wal.logOffset(3);
+        apply(live, wal, 2, 10, 7.0, 1);          // offset 3, never marked: crashed mid-record
+        wal.close();
+
+        BucketStore restored = BucketStore.create("packed", 16);
+        ShardWal.Recovery r = ShardWal.recover(dir, 3, restored);
+        assertEquals(1, r.snapshotOffset());
+        assertEquals(2, r.replayedRecords());
+        assertEquals(1, r.skippedRecords());
+        assertTrue(Double.isNaN(restored.add(1, 10, 0.0, 0)), "alerted flag survives");
+        assertEquals(5.0, restored.add(2, 10, 0.0, 0));
+        assertEquals(0, restored.drainPending((d, w, kwh, n) -> {}), "recovered totals are not re-flushed");
+
+        // the DB only has offsets below 2: records 2.. will be consumed again, so they must not be replayed
+        BucketStore behind = BucketStore.create("packed", 16);
+        ShardWal.recover(dir, 2, behind);
+        assertEquals(0.0, behind.add(2, 10, 0.0, 0));
+
+        // position before the first record: the previous generation's (empty) snapshot still applies
+        BucketStore empty = BucketStore.create("packed", 16);
+        assertEquals(0, ShardWal.recover(dir, 0, empty).snapshotOffset());
+        assertEquals(0, empty.size());
+
+        // position older than every snapshot: nothing usable
+        assertEquals(-1, ShardWal.recover(dir, -1, BucketStore.create("packed", 16)).generation());
+    }
+
+    @Test
+    void openingAfterRecoveryDiscardsRecordsBeyondPosition() throws IOException {
+        BucketStore live = BucketStore.create("object", 16);
+        ShardWal wal = ShardWal.open(dir, 0, live, 0);
+        apply(live, wal, 4, 1, 1.0, 1);
+        wal.logOffset(1);
+        apply(live, wal, 4, 1, 1.0, 1);
+        wal.logOffset(2);
+        wal.close();
+
+        BucketStore restored = BucketStore.create("object", 16);
+        ShardWal.recover(dir, 1, restored);
+        ShardWal.open(dir, 1, restored, 0).close();
+
+        BucketStore again = BucketStore.create("object", 16);
+        ShardWal.recover(dir, 5, again);
+        assertEquals(1.0, again.add(4, 1, 0.0, 0));
+    }
+
+    /**
+     * Restart cost: builds DEVICES x 2 open windows with a snapshot part-way, then measures how long a
+     * fresh shard takes to get back to the same totals, and what the WAL costs on disk and on heap.
+     */
+    @Test
+    void restartToSteadyStateTimeAndMemory() throws IOException {
+        final int devices = 200_000, rounds = 10;
+        BucketStore live = BucketStore.create("packed", devices * 2);
+        ShardWal wal = ShardWal.open(dir, 0, live, 64 << 20);
+
+        long offset = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (long d = 0; d < devices; d++) {
+                apply(live, wal, d, 1_000 + (round & 1), 0.25, 1);
+                wal.logOffset(++offset);
+            }
+            if (round == rounds / 2) wal.snapshot(live, offset);
+        }
+        long walBytes = wal.logBytes();
+        wal.close();
+
+        long heapBefore = usedHeapAfterGc();
+        long t0 = System.nanoTime();
+        BucketStore restored = BucketStore.create("packed", devices * 2);
+        ShardWal.Recovery r = ShardWal.recover(dir, offset, restored);
+        long recoverMs = (System.nanoTime() - t0) / 1_000_000;
+        long heapAfter = usedHeapAfterGc();
+
+        System.out.printf("ShardWal restart | %d buckets, %d records replayed: recovered in %d ms | "
+                        + "disk: snapshot+log %d MB (log %d MB) | restored store heap ~%d MB%n",
+                restored.size(), r.replayedRecords(), recoverMs, dirBytes() >> 20, walBytes >> 20,
+                (heapAfter - heapBefore) >> 20);
+
+        assertEquals(devices * 2, restored.size());
+        for (long d = 0; d < devices; d += 997) {
+            assertEquals(live.add(d, 1_000, 0.0, 0), restored.add(d, 1_000, 0.0, 0));
+            assertEquals(live.add(d, 1_001, 0.0, 0), restored.add(d, 1_001, 0.0, 0));
+        }
+    }
+
+    private static void apply(BucketStore store, ShardWal wal, long deviceId, long window, double kwh, int samples) {
+        store.add(deviceId, window, kwh, samples);
+        wal.logAdd(deviceId, window, kwh, samples);
+    }
+
+    private long dirBytes() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,265 @@
+package distributedSystem.Monitoring.service;
+
+import distributedSystem.Monitoring.dto.LateReadingDto;
+import distributedSystem.Monitoring.kafka.AlertProducer;
+import distributedSystem.Monitoring.kafka.LateReadingProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WindowAggregatorTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DEVICE = 7;
+
+    private final WindowFlushWriter flushWriter = mock(WindowFlushWriter.class);
+    private final IngestOffsetStore offsetStore = mock(IngestOffsetStore.class);
+    private final LiveConsumptionHub live = mock(LiveConsumptionHub.class);
+    private final LateReadingProducer lateReadings = mock(LateReadingProducer.class);
+    private final TransactionTemplate tx = mock(TransactionTemplate.class);
+
+    // merged rows of each flush transaction, and with offsets-in-db the sealed batches it stored offsets for
+    private final BlockingQueue<List<Row>> writes = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<Batch>> offsetSaves = new LinkedBlockingQueue<>();
+
+    record Row(long deviceId, long windowStartMillis, double kwh) {}
+
+    record Batch(int partition, long nextOffset, List<Row> rows) {}
+
+    WindowAggregatorTest() {
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(tx).executeWithoutResult(any());
+        when(flushWriter.write(any(), anyInt(), anyLong(), any())).thenAnswer(inv -> {
+            writes.add(rows(inv.getArgument(0)));
+            return 0;
+        });
+        doAnswer(inv -> {
+            List<Batch> batches = new ArrayList<>();
+            for (SealedDeltas b : inv.<Collection<SealedDeltas>>getArgument(0)) {
+                batches.add(new Batch(b.partition(), b.nextOffset(), rows(b)));
+            }
+            offsetSaves.add(batches);
+            return null;
+        }).when(offsetStore).save(any(), any());
+    }
+
+    /** 60 min windows, event time, 60 min lateness, 10 min future limit and watermark skew. */
+    private WindowAggregator aggregator() {
+        return aggregator(10, false);
+    }
+
+    private WindowAggregator aggregator(int maxFutureMinutes, boolean offsetsInDb) {
+        return new WindowAggregator(null, flushWriter, mock(ThresholdTable.class), mock(AlertProducer.class),
+                new DeviceIdCodec("device-", 3, 0), tx, offsetStore,
+                new AggregatorWal(false, "unused", 1, 60), new RecentSeriesStore(false, "unused", 1, 60),
+                new SeriesVersions(), live, lateReadings, new SimpleMeterRegistry(),
+                60, false, 60, maxFutureMinutes, 10, "object", 16, offsetsInDb, 5, 500, 60, 20_000);
+    }
+
+    /** Starts a flush, lets this (owner) thread seal, and returns the rows the writer thread wrote. */
+    private List<Row> flushAndWrite(WindowAggregator aggregator) throws InterruptedException {
+        aggregator.flush();
+        aggregator.sealOwnedShards();
+        aggregator.flush();
+        List<Row> written = writes.poll(2, TimeUnit.SECONDS);
+        assertNotNull(written, "nothing was written");
+        return written;
+    }
+
+    private List<LateReadingDto> rejected() {
+        ArgumentCaptor<LateReadingDto> captor = ArgumentCaptor.forClass(LateReadingDto.class);
+        verify(lateReadings, atLeast(0)).send(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static List<Row> rows(SealedDeltas deltas) {
+        List<Row> out = new ArrayList<>(deltas.size());
+        for (int i = 0; i < deltas.size(); i++) {
+            out.add(new Row(deltas.deviceId(i), deltas.windowIndex(i) * HOUR, deltas.kwh(i)));
+        }
+        return out;
+    }
+
+    private static long hourStart(long millis) {
+        return Math.floorDiv(millis, HOUR) * HOUR;
+    }
+
+    @Test
+    void releasedPartitionComesBackWithoutItsOldBuckets() throws Exception {
+        WindowAggregator aggregator = aggregator();
+        when(live.watching(DEVICE)).thenReturn(true);
+        long window = hourStart(System.currentTimeMillis());
+
+        aggregator.claimPartitions(List.of(0), Map.of(0, 0L));
+        aggregator.addSamples(0, DEVICE, window + 60_000, 8.0, 1);
+        aggregator.advance(0, 1);
+        aggregator.releasePartitions(List.of(0));
+        assertEquals(0, aggregator.bucketCount(), "released buckets are not kept");
+
+        // another instance consumed the partition meanwhile; its totals are not ours to continue
+        aggregator.claimPartitions(List.of(0), Map.of(0, 40L));
+        aggregator.addSamples(0, DEVICE, window + 120_000, 5.0, 1);
+        verify(live).offer(DEVICE, window, 5.0, 5.0, 1);
+
+        aggregator.flush();
+        assertEquals(List.of(new Row(DEVICE, window, 8.0)), writes.poll(2, TimeUnit.SECONDS),
+                "the final seal of the release is still written");
+    }
+
+    @Test
+    void readingsWithinTheLatenessAreAddedAndLaterOnesGoToTheSideOutput() throws Exception {
+        WindowAggregator aggregator = aggregator();
+        long w0 = hourStart(System.currentTimeMillis()) - 5 * HOUR;
+
+        // watermark w0+3h30: windows before w0+2h30's window (w0+2h) are closed
+        aggregator.addSamples(0, DEVICE, w0 + 3 * HOUR + 30 * 60_000, 1.0, 1);
+        aggregator.addSamples(0, DEVICE, w0 + 2 * HOUR + 10 * 60_000, 2.0, 1);   // 80 min behind, within lateness
+        aggregator.addSamples(0, DEVICE, w0 + HOUR + 50 * 60_000, 4.0, 3);       // window w0+1h is closed
+        aggregator.advance(0, 3);
+
+        assertEquals(List.of(new Row(DEVICE, w0 + 2 * HOUR, 2.0), new Row(DEVICE, w0 + 3 * HOUR, 1.0)),
+                flushAndWrite(aggregator));
+        List<LateReadingDto> rejected = rejected();
+        assertEquals(1, rejected.size());
+        assertEquals("late", rejected.get(0).reason());
+        assertEquals(3, rejected.get(0).samples());
+        assertEquals(w0 + HOUR, rejected.get(0).windowStartUtc().toEpochMilli());
+        assertEquals(w0 + 3 * HOUR + 30 * 60_000, rejected.get(0).watermarkUtc().toEpochMilli());
+    }
+
+    @Test
+    void futureReadingsAreRejectedWithoutMovingTheWatermark() throws Exception {
+        WindowAggregator aggregator = aggregator();
+        long now = System.currentTimeMillis();
+
+        aggregator.addSamples(0, DEVICE, now + 3 * HOUR, 9.0, 1);           // beyond max-future-minutes
+        aggregator.addSamples(0, DEVICE, now - 90 * 60_000, 1.0, 1);        // would be late behind that reading
+        aggregator.advance(0, 2);
+
+        assertEquals(List.of(new Row(DEVICE, hourStart(now - 90 * 60_000), 1.0)), flushAndWrite(aggregator));
+        List<LateReadingDto> rejected = rejected();
+        assertEquals(1, rejected.size());
+        assertEquals("future", rejected.get(0).reason());
+        assertNull(rejected.get(0).watermarkUtc(), "no reading had moved the watermark yet");
+    }
+
+    @Test
+    void watermarkStaysWithinTheSkewOfTheWallClock() throws Exception {
+        WindowAggregator aggregator = aggregator(0, false);   // future readings accepted
+        long now = System.currentTimeMillis();
+
+        aggregator.addSamples(0, DEVICE, now + 5 * HOUR, 9.0, 1);
+        // the watermark is at most now + 10 min, so a reading 30 min old is still within the lateness
+        aggregator.addSamples(0, DEVICE, now - 30 * 60_000, 1.0, 1);
+        aggregator.advance(0, 2);
+
+        List<Row> written = flushAndWrite(aggregator);
+        assertEquals(2, written.size());
+        assertTrue(written.contains(new Row(DEVICE, hourStart(now - 30 * 60_000), 1.0)));
+        assertEquals(List.of(), rejected());
+    }
+
+    @Test
+    void closedWindowsAreWrittenBeforeTheirBucketsAreEvicted() throws Exception {
+        WindowAggregator aggregator = aggregator();
+        long w0 = hourStart(System.currentTimeMillis()) - 5 * HOUR;
+
+        aggregator.addSamples(0, DEVICE, w0 + 60_000, 1.5, 1);
+        aggregator.advance(0, 1);
+        aggregator.addSamples(0, DEVICE, w0 + 3 * HOUR, 2.0, 1);   // closes w0 before it was ever sealed
+        aggregator.advance(0, 2);
+
+        assertEquals(List.of(new Row(DEVICE, w0, 1.5), new Row(DEVICE, w0 + 3 * HOUR, 2.0)), flushAndWrite(aggregator));
+        assertEquals(1, aggregator.bucketCount(), "the closed window went with its last delta");
+
+        aggregator.addSamples(0, DEVICE, w0 + 120_000, 1.0, 1);
+        assertEquals("late", rejected().get(0).reason(), "an evicted window is not recreated");
+    }
+
+    @Test
+    void aFlushOnlyWritesWhatTheOwnersSealed() throws Exception {
+        WindowAggregator aggregator = aggregator();
+        long window = hourStart(System.currentTimeMillis());
+
+        aggregator.addSamples(0, DEVICE, window, 1.0, 1);
+        aggregator.flush();
+        assertEquals(0, aggregator.pendingDeltas(), "the flush does not touch the shard");
+
+        aggregator.advance(0, 1);   // the owner seals on its next record boundary
+        assertEquals(1, aggregator.pendingDeltas());
+        aggregator.addSamples(0, DEVICE, window, 2.0, 1);   // next generation
+        aggregator.advance(0, 2);
+
+        aggregator.flush();
+        assertEquals(List.of(new Row(DEVICE, window, 1.0)), writes.poll(2, TimeUnit.SECONDS));
+        assertEquals(List.of(new Row(DEVICE, window, 2.0)), flushAndWrite(aggregator));
+    }
+
+    @Test
+    void aSealedOffsetNeverCoversDeltasItDoesNotCarry() throws Exception {
+        WindowAggregator aggregator = aggregator(10, true);
+        long window = hourStart(System.currentTimeMillis());
+
+        // one reading of 1 kWh per record; flushes start between arbitrary records
+        int records = 50;
+        for (int offset = 0; offset < records; offset++) {
+            aggregator.addSamples(0, DEVICE, window, 1.0, 1);
+            if (offset % 7 == 3) aggregator.flush();
+            aggregator.advance(0, offset + 1);
+        }
+        flushAndWrite(aggregator);
+
+        double carried = 0;
+        long lastOffset = 0;
+        while (lastOffset < records) {
+            List<Batch> batches = offsetSaves.poll(2, TimeUnit.SECONDS);
+            assertNotNull(batches, "no write stored offset " + records);
+            for (Batch b : batches) {
+                for (Row r : b.rows()) carried += r.kwh();
+                assertTrue(b.nextOffset() > lastOffset);
+                assertEquals(b.nextOffset(), carried, 1e-9, "offset " + b.nextOffset() + " vs deltas sealed so far");
+                lastOffset = b.nextOffset();
+            }
+        }
+        assertEquals(records, lastOffset);
+    }
+
+    @Test
+    void batchAdvanceRecordsEveryOffsetBeforeSealing() throws Exception {
+        WindowAggregator aggregator = aggregator(10, true);
+        long window = hourStart(System.currentTimeMillis());
+
+        aggregator.addSamples(0, DEVICE, window, 1.0, 1);
+        aggregator.addSamples(1, DEVICE + 1, window, 2.0, 1);
+        aggregator.advance(Map.of(0, 10L, 1, 20L));
+        aggregator.flush();
+        aggregator.addSamples(0, DEVICE, window, 4.0, 1);
+        aggregator.addSamples(1, DEVICE + 1, window, 8.0, 1);
+        aggregator.advance(Map.of(0, 11L, 1, 21L));   // both shards seal with both offsets recorded
+        aggregator.flush();
+
+        List<Batch> batches = offsetSaves.poll(2, TimeUnit.SECONDS);
+        assertNotNull(batches);
+        batches.sort((a, b) -> Integer.compare(a.partition(), b.partition()));
+        assertEquals(List.of(
+                new Batch(0, 11, List.of(new Row(DEVICE, window, 5.0))),
+                new Batch(1, 21, List.of(new Row(DEVICE + 1, window, 10.0)))), batches);
+    }
+}
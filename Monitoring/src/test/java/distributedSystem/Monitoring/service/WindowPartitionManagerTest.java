@@ -0,0 +1,35 @@
+package distributedSystem.Monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowPartitionManagerTest {
+
+    @Test
+    void dailyPartitionsCoverTodayAndPremakeAhead() {
+        WindowPartitionManager m = new WindowPartitionManager(null, null, true, "day", 3, 0);
+        List<WindowPartitionManager.Range> r = m.upcoming(LocalDate.of(2026, 12, 30));
+
+        assertEquals(4, r.size());
+        assertEquals("window_consumption_p20261230", r.get(0).name());
+        assertEquals(LocalDate.of(2026, 12, 31), r.get(0).end());
+        assertEquals("window_consumption_p20270102", r.get(3).name());
+        assertEquals(LocalDate.of(2027, 1, 3), r.get(3).end());
+    }
+
+    @Test
+    void monthlyPartitionsAlignToTheFirstOfTheMonth() {
+        WindowPartitionManager m = new WindowPartitionManager(null, null, true, "monthly", 1, 0);
+        List<WindowPartitionManager.Range> r = m.between(LocalDate.of(2026, 1, 31), LocalDate.of(2026, 3, 1));
+
+        assertEquals(List.of("window_consumption_p202601", "window_consumption_p202602", "window_consumption_p202603"),
+                r.stream().map(WindowPartitionManager.Range::name).toList());
+        assertEquals(LocalDate.of(2026, 3, 1), r.get(1).end());
+
+        assertThrows(IllegalArgumentException.class, () -> WindowPartitionManager.Granularity.parse("week"));
+    }
+}